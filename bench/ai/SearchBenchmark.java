@@ -0,0 +1,104 @@
+package ai;
+
+import java.util.concurrent.TimeUnit;
+import kalaha.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the evaluation and of fixed-depth searches from the SearchSuite reference positions, as
+ * SearchSuite runs them. The search benchmark also reports nodes per second (the "nodes" counter) next to the
+ * searches per second, so that speed and node count changes can be told apart.
+ *
+ * Run with "ant bench", adding "-Dbench.args=-prof gc" for the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchBenchmark {
+    /* Number of positions in SearchSuite.POSITIONS. The annotation needs a constant, so setUp checks that the two
+     * still agree. */
+    static final int POSITION_COUNT = 9;
+
+    private GameState[] boards;
+
+    /**
+     * The searcher of the search benchmark, with the depth and table size it is run with.
+     */
+    @State(Scope.Thread)
+    public static class SearchState {
+        /* Depth of the fixed-depth searches */
+        @Param({ "8", "12" })
+        public int depth;
+
+        /* Size of the transposition table, cleared before every search */
+        @Param({ "20" })
+        public int ttSizeBits;
+
+        TranspositionTable transpositionTable;
+        Searcher searcher;
+
+        @Setup
+        public void setUp() {
+            transpositionTable = new TranspositionTable(ttSizeBits);
+            searcher = new Searcher(transpositionTable, 0);
+            searcher.setMaxDepth(depth);
+        }
+    }
+
+    /**
+     * Nodes searched, reported by JMH as a rate per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        if (SearchSuite.POSITIONS.length != POSITION_COUNT) {
+            throw new IllegalStateException("SearchSuite has " + SearchSuite.POSITIONS.length + " positions, update POSITION_COUNT");
+        }
+        boards = new GameState[SearchSuite.POSITIONS.length];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new GameState(SearchSuite.POSITIONS[i]);
+        }
+    }
+
+    /**
+     * The heuristic over all reference positions (one operation per position).
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(POSITION_COUNT)
+    public void heuristicCalc(Blackhole blackhole) {
+        for (int i = 0; i < boards.length; i++) {
+            blackhole.consume(Searcher.heuristicCalc(boards[i]));
+        }
+    }
+
+    /**
+     * A search of every reference position to the fixed depth, with an empty transposition table.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int search(SearchState state, Nodes counter) {
+        Searcher searcher = state.searcher;
+        int moves = 0;
+        for (int i = 0; i < boards.length; i++) {
+            state.transpositionTable.clear();
+            searcher.init(boards[i], new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE));
+            moves += searcher.iterate();
+            counter.nodes += searcher.getNodes() + searcher.getQuiescenceNodes();
+        }
+        return moves;
+    }
+}
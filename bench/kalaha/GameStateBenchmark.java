@@ -0,0 +1,127 @@
+package kalaha;
+
+import ai.SearchSuite;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the GameState operations used by the searches and
+ * the server. Every benchmark method runs over all SearchSuite
+ * reference positions, so a score is the mean over those positions.
+ * copy, format and parse measure clone, toString and the
+ * GameState(String) constructor.
+ *
+ * Run with "ant bench", adding "-Dbench.args=-prof gc" for the
+ * allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+// One operation per position in SearchSuite.POSITIONS
+@OperationsPerInvocation(GameStateBenchmark.POSITION_COUNT)
+public class GameStateBenchmark
+{
+    // Number of positions in SearchSuite.POSITIONS. The annotation
+    // needs a constant, so setUp checks that the two still agree.
+    static final int POSITION_COUNT = 9;
+
+    private String[] strings;
+    private GameState[] boards;
+
+    // The first legal move in each position
+    private int[] moves;
+
+    @Setup
+    public void setUp()
+    {
+        if (SearchSuite.POSITIONS.length != POSITION_COUNT)
+        {
+            throw new IllegalStateException("SearchSuite has " + SearchSuite.POSITIONS.length + " positions, update POSITION_COUNT");
+        }
+        strings = SearchSuite.POSITIONS.clone();
+        boards = new GameState[strings.length];
+        moves = new int[strings.length];
+        for (int i = 0; i < strings.length; i++)
+        {
+            boards[i] = new GameState(strings[i]);
+            moves[i] = MoveGenerator.get(MoveGenerator.generate(boards[i]), 0);
+        }
+    }
+
+    /**
+     * Copies a board and makes a move in the copy, since makeMove
+     * changes the board. Subtract clone for the move alone.
+     */
+    @Benchmark
+    public void makeMove(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            GameState board = boards[i].clone();
+            blackhole.consume(board.makeMove(moves[i]));
+            blackhole.consume(board);
+        }
+    }
+
+    /**
+     * A move made and taken back in place, as the searches do.
+     */
+    @Benchmark
+    public void doUndoMove(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            blackhole.consume(boards[i].doMove(moves[i]));
+            boards[i].undoMove();
+        }
+    }
+
+    @Benchmark
+    public void copy(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            blackhole.consume(boards[i].clone());
+        }
+    }
+
+    @Benchmark
+    public void gameEnded(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            blackhole.consume(boards[i].gameEnded());
+        }
+    }
+
+    @Benchmark
+    public void getScore(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            blackhole.consume(boards[i].getScore(boards[i].getNextPlayer()));
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole)
+    {
+        for (int i = 0; i < boards.length; i++)
+        {
+            blackhole.consume(boards[i].toString());
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole)
+    {
+        for (int i = 0; i < strings.length; i++)
+        {
+            blackhole.consume(new GameState(strings[i]));
+        }
+    }
+}
@@ -22,6 +22,22 @@ public class AIClient implements Runnable
     private Socket socket;
     private boolean running;
     private boolean connected;
+
+    /* The engine selected by Global.SEARCH_MODE, behind the proof-number solver (see Global.DFPN_SEEDS). It is kept
+     * between moves since the transposition tables are. */
+    private SearchEngine engine;
+
+    /* The engine's LazySmpSearch, if the "smp" search is used, which is shared with the ponderer */
+    private LazySmpSearch search;
+
+    /* Searches on the opponent's time with the "smp" search, if Global.PONDER is set */
+    private Ponderer ponderer;
+
+    /* Time limits per move, from -Dkalaha.time and -Dkalaha.softtime */
+    private TimeManager timeManager = TimeManager.fromSettings();
+
+    /* Search statistics of every move are appended here if -Dkalaha.stats is set, otherwise null */
+    private StatsLog statsLog = StatsLog.fromSettings();
     	
     /**
      * Creates a new client.
@@ -320,6 +336,9 @@ public class AIClient implements Runnable
                     }
                     running = false;
                 }
+                if (!running) {
+                    stopPondering(null);
+                }
 
                 //Check if it is my turn. If so, do a move
                 out.println(Commands.NEXT_PLAYER);
@@ -331,6 +350,7 @@ public class AIClient implements Runnable
                     if(nextPlayer == player) {
                         out.println(Commands.BOARD);
                         String currentBoardStr = in.readLine();
+                        stopPondering(new GameState(currentBoardStr));
                         boolean validMove = false;
                         while (!validMove) {
                             long startT = System.currentTimeMillis();
@@ -368,6 +388,7 @@ public class AIClient implements Runnable
                                 validMove = true;
                                 addText("Made move " + cMove + " in " + e + " secs");
                                 nrOfMoves++;
+                                startPondering(currentBoard, cMove);
                             }
                         }
                     }
@@ -403,177 +424,84 @@ public class AIClient implements Runnable
      */
     public int getMove(GameState currentBoard)
     {
-        int score;
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
-        int bestScore;
-        int bestMove = -1;
-
-        long startTime = System.currentTimeMillis();
-        long maxSearchTime = 4900; /* N.B. this is time in ms - 4.9 sec to keep search time < 5 sec. */
-
-        boolean isMaxPlayer = false;
-        int curDepth = 0;
-
-        GameState newBoard;
-
-        /* Player 1 is always maximizing player */
-        if (player == 1) {
-            isMaxPlayer = true;
-        }
-
-        /* Initialization of best score for minimizing/maximizing player */
-        if (isMaxPlayer) {
-            bestScore = Integer.MIN_VALUE;
-        }
-        else {
-            bestScore = Integer.MAX_VALUE;
-        }
-
-        /* While the search has not been carried out for more than maximum search time */
-        while ((System.currentTimeMillis() - startTime) < maxSearchTime) {
-            /* Increase depth by 1 (initialized to 0) */
-            curDepth++;
+        SearchEngine engine = getEngine();
+        int bestMove = engine.getMove(currentBoard, timeManager);
+        addText(engine.getReport());
 
-            /* Spawning 6 nodes to find the best move in each respective subtree */
-            for (int ambo = 1; ambo <= 6; ambo++) {
-                newBoard = currentBoard.clone();
-
-                if (isMaxPlayer) {
-                    score = Integer.MIN_VALUE;
-                } else {
-                    score = Integer.MAX_VALUE;
-                }
-
-                /* Check if move is possible, and if so...*/
-
-                if (newBoard.makeMove(ambo)) {
-                    /* This check is implemented to account for when any player gets multiple turns */
-                    if (newBoard.getNextPlayer() == 1) {
-                        score = miniMax(newBoard, curDepth - 1, isMaxPlayer, alpha, beta, startTime, maxSearchTime);
-                    }
-                    if (newBoard.getNextPlayer() == 2) {
-                        score = miniMax(newBoard, curDepth - 1, !isMaxPlayer, alpha, beta, startTime, maxSearchTime);
-                    }
-                }
-
-                /* If it's the maximizing player's turn and the current score is better than the previous - we have found a better branch (ambo) */
-                if (isMaxPlayer && score > bestScore) {
-                    bestScore = score;
-                    bestMove = ambo;
-                } /* If it's the minimizing player's turn and the current score is better than the previous - we have found a better branch (ambo) */ else if (!isMaxPlayer && score < bestScore) {
-                    bestScore = score;
-                    bestMove = ambo;
-                }
+        SearchStats stats = engine.getStats();
+        addText(stats.toString());
+        if (statsLog != null) {
+            try {
+                statsLog.write(stats);
+            } catch (IOException e) {
+                addText("Could not write search statistics: " + e.getMessage());
             }
         }
-
         return bestMove;
     }
 
     /**
-     *
-     * This function implements the means for performing the recursive DFS with alfa-beta pruning used in the MiniMax algorithm.
-     * The DFS search is carried out in an iterative deepening fashion.
-     *
-     * @param currentBoard The current board state.
-     * @param depth Current depth of DFS.
-     * @param isMaxPlayer Boolean stating whether or not current player is the maximizing player.
-     * @param alpha The current highest score. Used for pruning when compared to beta.
-     * @param beta The current lowest score. Used for pruning when compared to alpha.
-     * @param startTime The time when the player initiated their move. Used to know how much time has elapsed.
-     * @param maxSearchTime The maximum time the algorithm can search for a solution. The best solution that was found during this time will be picked as the optimal solution.
-     * @return Returns the best score of the node sub-tree.
-     *
+     * Creates the search engine on first use. An unknown Global.SEARCH_MODE gives the "smp" search.
+     * 
+     * @return The engine
      */
-    public int miniMax(GameState currentBoard, int depth, boolean isMaxPlayer, int alpha, int beta, long startTime, long maxSearchTime) {
-        int bestScore;
-        int score;
-
-        /* Cloning the current game board */
-        GameState newBoard = currentBoard.clone();
-
-        /* Initialization of best score for minimizing/maximizing player */
-        if (isMaxPlayer) {
-            bestScore = Integer.MIN_VALUE;
-        }
-        else {
-            bestScore = Integer.MAX_VALUE;
-        }
-
-        /* If the leaf node has been reached, return heuristic score */
-        if (depth == 0 || newBoard.gameEnded() || (System.currentTimeMillis() - startTime) >= maxSearchTime) {
-            bestScore = heuristicCalc(newBoard);
-            return bestScore;
-        }
-
-        /* Recursively traverse each respective node (game move) tree */
-        for (int ambo = 1; ambo <= 6; ambo++) {
-            if (isMaxPlayer) {
-                score = Integer.MIN_VALUE;
-            }
-            else {
-                score = Integer.MAX_VALUE;
-            }
-
-            /* Check if move is possible, and if so...*/
-            if (newBoard.makeMove(ambo)) {
-                /* This check is implemented to account for when any player gets multiple turns */
-                if (newBoard.getNextPlayer() == 1) {
-                    score = miniMax(newBoard, depth - 1, isMaxPlayer, alpha, beta, startTime, maxSearchTime);
-                }
-                if (newBoard.getNextPlayer() == 2) {
-                    score = miniMax(newBoard, depth - 1, !isMaxPlayer, alpha, beta, startTime, maxSearchTime);
-                }
-            }
-
-            /* Calculate best score for the current player */
-            if (isMaxPlayer) {
-                bestScore = Integer.max(score, bestScore);
-                alpha = Integer.max(score, alpha);
-            }
-            else {
-                bestScore = Integer.min(score, bestScore);
-                beta = Integer.min(score, beta);
+    private SearchEngine getEngine()
+    {
+        if (engine == null) {
+            SearchEngine base;
+            try {
+                base = SearchEngines.create(Global.SEARCH_MODE, Global.SEARCH_THREADS, Global.TT_SIZE_BITS);
+            } catch (IllegalArgumentException e) {
+                addText(e.getMessage() + ", using smp");
+                base = SearchEngines.create("smp", Global.SEARCH_THREADS, Global.TT_SIZE_BITS);
             }
-            
-            /* Prune away the unnecessary branch */
-            if (beta <= alpha) {
-            	break;
+            if (base instanceof LazySmpSearch) {
+                search = (LazySmpSearch)base;
             }
+            engine = SearchEngines.withSolver(base);
         }
-
-        return bestScore;
+        return engine;
     }
 
     /**
-     *
-     * This function calculates the heuristic value for each respective node.
-     *
-     * @param currentBoard The current board state.
-     * @return Heuristic value based on current scores and number of seeds in the ambos.
-     * High values for player 1 (maximizing player), low values for player 2 (minimizing player).
+     * Starts searching on the opponent's time after a move was made.
+     * Does nothing unless pondering is turned on and the "smp" search is used.
+     * 
+     * @param currentBoard The board state the move was made in
+     * @param move The move that was made
      */
+    private void startPondering(GameState currentBoard, int move)
+    {
+        getEngine();
+        if (!Global.PONDER || search == null) {
+            return;
+        }
+        if (ponderer == null) {
+            ponderer = new Ponderer(search);
+        }
 
-    public int heuristicCalc(GameState currentBoard) {
-        int player1Seeds = 0;
-        int player2Seeds = 0;
+        GameState nextBoard = currentBoard.clone();
+        nextBoard.makeMove(move);
+        ponderer.start(nextBoard, player);
+    }
 
-        /* Summing up the number of seeds in each player's ambos */
-        for (int ambo = 1; ambo <= 6; ambo++) {
-            player1Seeds += currentBoard.getSeeds(ambo, 1);
+    /**
+     * Stops searching on the opponent's time, before the search is used
+     * for our own move.
+     * 
+     * @param currentBoard The board state we now have to move in, or null if the game has ended
+     */
+    private void stopPondering(GameState currentBoard)
+    {
+        if (ponderer == null || !ponderer.isPondering()) {
+            return;
         }
 
-        for (int ambo = 1; ambo <= 6; ambo++) {
-            player2Seeds += currentBoard.getSeeds(ambo, 2);
+        ponderer.stop();
+        if (currentBoard != null) {
+            addText("Pondered " + search.getNodes() + " nodes, predicted reply " + ponderer.getPredictedMove()
+                    + (ponderer.isHit(currentBoard) ? " was played" : " was not played"));
         }
-
-        /* Adding the number of seeds in each player's house (these seeds are worth twice as much) */
-        player1Seeds += (currentBoard.getScore(1) * 2);
-        player2Seeds += (currentBoard.getScore(2) * 2);
-
-        /* Returning the difference in seed values between player 1 and player 2 */
-        return player1Seeds - player2Seeds;
     }
 
     /**
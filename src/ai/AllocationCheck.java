@@ -0,0 +1,123 @@
+package ai;
+import java.lang.management.ManagementFactory;
+import kalaha.*;
+
+/**
+ * Checks that moves made and taken back in place, and the searches built on them, allocate nothing per node. The
+ * bytes allocated by the current thread are read from the JVM before and after a run; a run may allocate a fixed
+ * amount for its setup, but anything per node would add up to megabytes over the millions of nodes searched.
+ *
+ * Everything is run once before it is measured, so that class loading and compilation are not counted.
+ *
+ * Usage: AllocationCheck [perft depth] [search depth]. The exit status is 1 if a run allocated more than
+ * MAX_BYTES_PER_RUN.
+ */
+public class AllocationCheck {
+    /* Bytes a run may allocate in total: the copy of the board, the time manager and the JVM's own bookkeeping */
+    public static final long MAX_BYTES_PER_RUN = 64 * 1024;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final TranspositionTable transpositionTable = new TranspositionTable(20);
+    private final Searcher searcher = new Searcher(transpositionTable, 0);
+    private final Perft perft = new Perft("plain");
+
+    /**
+     * Creates a check.
+     * @throws UnsupportedOperationException If the JVM does not count the bytes allocated by a thread.
+     */
+    public AllocationCheck() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("This JVM does not count allocated bytes per thread");
+        }
+        threads = (com.sun.management.ThreadMXBean)bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * @return Bytes allocated by the current thread so far.
+     */
+    private long getAllocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Counts the move paths from a position with doMove/undoMove (Perft plain mode).
+     * @param board The position.
+     * @param depth Number of moves in each path.
+     * @return The bytes allocated and the number of paths.
+     */
+    public long[] measurePerft(GameState board, int depth) {
+        long start = getAllocatedBytes();
+        long count = perft.count(board, depth);
+        return new long[] { getAllocatedBytes() - start, count };
+    }
+
+    /**
+     * Searches a position to a fixed depth with an empty transposition table.
+     * @param board The position.
+     * @param depth Depth of the search.
+     * @return The bytes allocated and the number of nodes, quiescence nodes included.
+     */
+    public long[] measureSearch(GameState board, int depth) {
+        transpositionTable.clear();
+        searcher.setMaxDepth(depth);
+        TimeManager timeManager = new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        long start = getAllocatedBytes();
+        searcher.init(board, timeManager);
+        searcher.iterate();
+        return new long[] { getAllocatedBytes() - start, searcher.getNodes() + searcher.getQuiescenceNodes() };
+    }
+
+    /**
+     * Measures perft from the start position and a fixed-depth search of every SearchSuite position, printing one
+     * line per run.
+     * @param perftDepth Depth of perft.
+     * @param searchDepth Depth of the searches.
+     * @return True if no run allocated more than MAX_BYTES_PER_RUN.
+     */
+    public boolean verify(int perftDepth, int searchDepth) {
+        boolean ok = true;
+        for (int pass = 0; pass < 2; pass++) {
+            boolean measured = pass == 1;
+
+            long[] result = measurePerft(new GameState(), perftDepth);
+            if (measured) {
+                ok &= report("perft " + perftDepth, result);
+            }
+            for (String position : SearchSuite.POSITIONS) {
+                result = measureSearch(new GameState(position), searchDepth);
+                if (measured) {
+                    ok &= report("search " + searchDepth + " " + position, result);
+                }
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Prints the result of a run.
+     * @return True if the run allocated no more than MAX_BYTES_PER_RUN.
+     */
+    private static boolean report(String name, long[] result) {
+        boolean ok = result[0] <= MAX_BYTES_PER_RUN;
+        System.out.println(name + "\t" + result[1] + " nodes\t" + result[0] + " bytes\t"
+                + String.format("%.4f", (double)result[0] / Math.max(1, result[1])) + " bytes/node" + (ok ? "" : "\tFAILED"));
+        return ok;
+    }
+
+    /**
+     * Runs the check from the command line.
+     * @param args Optional: perft depth (default 10) and search depth (default 12).
+     */
+    public static void main(String[] args) {
+        int perftDepth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int searchDepth = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+
+        boolean ok = new AllocationCheck().verify(perftDepth, searchDepth);
+        System.out.println(ok ? "No allocation per node" : "Allocation per node");
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -8,6 +8,128 @@ package ai;
  */
 public class Global 
 {
+    /**
+     * Size of the transposition table as a power of two. Can be
+     * set with -Dkalaha.tt.bits (default 2^20 entries, 16 MB).
+     */
+    public static final int TT_SIZE_BITS = Integer.getInteger("kalaha.tt.bits", 20);
+    
+    /**
+     * Number of search threads (Lazy SMP). Can be set with
+     * -Dkalaha.threads (default 1, i.e. a sequential search).
+     */
+    public static final int SEARCH_THREADS = Integer.getInteger("kalaha.threads", 1);
+    
+    /**
+     * Parallel search mode, set with -Dkalaha.search: "smp" for
+     * Lazy SMP (default) or "ybw" for Young Brothers Wait on a
+     * ForkJoinPool. Both use SEARCH_THREADS threads. "turn" selects
+     * the single-threaded search over complete turns (TurnSearch), and
+     * "mcts" Monte Carlo Tree Search on SEARCH_THREADS threads.
+     */
+    public static final String SEARCH_MODE = System.getProperty("kalaha.search", "smp");
+    
+    /**
+     * Hard time limit per move in ms, after which the search is
+     * aborted. Can be set with -Dkalaha.time (default 4900 to keep
+     * each move below 5 sec).
+     */
+    public static final long HARD_TIME_LIMIT = Long.getLong("kalaha.time", 4900);
+    
+    /**
+     * Soft time limit per move in ms, after which no new search
+     * iteration is started. Can be set with -Dkalaha.softtime
+     * (default half of the hard limit).
+     */
+    public static final long SOFT_TIME_LIMIT = Long.getLong("kalaha.softtime", HARD_TIME_LIMIT / 2);
+    
+    /**
+     * Adaptive time allocation (see TimeManager), which moves the
+     * soft limit per move. Can be turned off with
+     * -Dkalaha.adaptivetime=false.
+     */
+    public static final boolean ADAPTIVE_TIME = !"false".equals(System.getProperty("kalaha.adaptivetime"));
+    
+    /**
+     * Search algorithm of the "smp" search: "alphabeta", "pvs" (default)
+     * or "mtdf". Can be set with -Dkalaha.algorithm=...
+     */
+    public static final String SEARCH_ALGORITHM = System.getProperty("kalaha.algorithm", "pvs");
+    
+    /**
+     * Aspiration windows around the previous iteration's score, used with
+     * "alphabeta" and "pvs". On unless -Dkalaha.aspiration=false.
+     */
+    public static final boolean ASPIRATION = !"false".equals(System.getProperty("kalaha.aspiration"));
+    
+    /**
+     * Quiescence search of extra-turn moves and captures at the horizon
+     * of the "smp" search. On unless -Dkalaha.quiescence=false.
+     */
+    public static final boolean QUIESCENCE = !"false".equals(System.getProperty("kalaha.quiescence"));
+    
+    /**
+     * Pondering: search on the opponent's time (see Ponderer). Can be
+     * turned on with -Dkalaha.ponder=true. Only used with the "smp"
+     * search mode.
+     */
+    public static final boolean PONDER = Boolean.getBoolean("kalaha.ponder");
+    
+    /**
+     * Playout policy of the "mcts" search: "random" or "greedy"
+     * (default, extra turns and captures first). Can be set with
+     * -Dkalaha.mcts.policy=...
+     */
+    public static final String MCTS_POLICY = System.getProperty("kalaha.mcts.policy", "greedy");
+    
+    /**
+     * Exploration constant of the "mcts" search (UCB1). Can be set
+     * with -Dkalaha.mcts.c (default 0.7).
+     */
+    public static final double MCTS_EXPLORATION = Double.parseDouble(System.getProperty("kalaha.mcts.c", "0.7"));
+    
+    /**
+     * Endgame tablebase file made by TablebaseGenerator, probed by the
+     * "smp" search once few seeds are left. Can be set with
+     * -Dkalaha.tablebase (default ./endgame.tb). No tablebase is used
+     * if the file does not exist.
+     */
+    public static final String TABLEBASE = System.getProperty("kalaha.tablebase", "./endgame.tb");
+    
+    /**
+     * The proof-number solver (see ProofNumberSearch) is tried before
+     * the normal search once at most this many seeds are left in the
+     * ambos. Can be set with -Dkalaha.dfpn.seeds (default 30, 0 turns
+     * the solver off).
+     */
+    public static final int DFPN_SEEDS = Integer.getInteger("kalaha.dfpn.seeds", 30);
+    
+    /**
+     * Most nodes the proof-number solver expands per move before
+     * falling back to the normal search. Can be set with
+     * -Dkalaha.dfpn.nodes (default 500000).
+     */
+    public static final long DFPN_NODES = Long.getLong("kalaha.dfpn.nodes", 500000);
+    
+    /**
+     * Size of the proof-number solver's table as a power of two. Can
+     * be set with -Dkalaha.dfpn.bits (default 2^20 entries, 16 MB).
+     */
+    public static final int DFPN_SIZE_BITS = Integer.getInteger("kalaha.dfpn.bits", 20);
+    
+    /**
+     * File the client appends the SearchStats of every move to (see
+     * StatsLog): JSON lines if the name ends with .jsonl, otherwise
+     * CSV. Can be set with -Dkalaha.stats (default none).
+     */
+    public static final String STATS_FILE = System.getProperty("kalaha.stats", "");
+    
+    /**
+     * Size in bytes after which the statistics file rolls over. Can be
+     * set with -Dkalaha.stats.size (default 1 MB).
+     */
+    public static final long STATS_MAX_SIZE = Long.getLong("kalaha.stats.size", 1 << 20);
+    
     private static boolean firstTaken = false;
     
     /**
@@ -0,0 +1,258 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Parallel MiniMax search in the Lazy SMP fashion. The main searcher and N-1 helper threads search the same root
+ * position with iterative deepening and share one transposition table. Helpers start at staggered depths and vary the
+ * root move order, so they fill the table with results the main searcher can use. Only the main searcher's result is
+ * used to pick the move.
+ */
+public class LazySmpSearch implements SearchEngine {
+    private final TranspositionTable transpositionTable;
+    private final Searcher[] searchers;
+
+    /* Time control and wall-clock time in ms of the last search */
+    private TimeManager timeManager;
+    private long searchTime;
+
+    /**
+     * Creates a new parallel search.
+     * @param threads Number of search threads (1 = main searcher only).
+     * @param ttSizeBits The shared transposition table holds 2^ttSizeBits entries.
+     */
+    public LazySmpSearch(int threads, int ttSizeBits) {
+        transpositionTable = new TranspositionTable(ttSizeBits);
+        searchers = new Searcher[Math.max(1, threads)];
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i] = new Searcher(transpositionTable, i);
+        }
+    }
+
+    /**
+     * Searches for the best move.
+     * @param currentBoard The current board state.
+     * @param timeManager Time control of the search. It is started here.
+     * @return The best move to make (1-6), as found by the main searcher.
+     */
+    public int getMove(GameState currentBoard, TimeManager timeManager) {
+        Thread[] helpers = new Thread[searchers.length];
+
+        this.timeManager = timeManager;
+        timeManager.start();
+        timeManager.allocate(currentBoard);
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i].init(currentBoard, timeManager);
+        }
+
+        /* Start the helpers, then search on this thread */
+        for (int i = 1; i < searchers.length; i++) {
+            helpers[i] = new Thread(searchers[i], "Search helper " + i);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+
+        int bestMove = searchers[0].iterate();
+
+        /* The main searcher has decided - stop the helpers */
+        for (int i = 1; i < searchers.length; i++) {
+            searchers[i].stop();
+        }
+        for (int i = 1; i < searchers.length; i++) {
+            try {
+                helpers[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        searchTime = timeManager.getElapsed();
+        return bestMove;
+    }
+
+    /**
+     * @return Number of search threads.
+     */
+    public int getThreads() {
+        return searchers.length;
+    }
+
+    /**
+     * @return Nodes searched by all threads during the last search.
+     */
+    public long getNodes() {
+        long nodes = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            nodes += searchers[i].getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return Nodes searched by the quiescence search of all threads during the last search, not included in getNodes.
+     */
+    public long getQuiescenceNodes() {
+        long nodes = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            nodes += searchers[i].getQuiescenceNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return Positions looked up in the endgame tablebase by all threads during the last search.
+     */
+    public long getTablebaseHits() {
+        long hits = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            hits += searchers[i].getTablebaseHits();
+        }
+        return hits;
+    }
+
+    /**
+     * @return Nodes per second over all threads during the last search.
+     */
+    public long getNodesPerSecond() {
+        return getNodes() * 1000 / Math.max(1, searchTime);
+    }
+
+    /**
+     * @return The deepest iteration completed by the main searcher.
+     */
+    public int getCompletedDepth() {
+        return searchers[0].getCompletedDepth();
+    }
+
+    /**
+     * @return Score of the main searcher's last completed iteration, from the point of view of the player to move.
+     */
+    public int getScore() {
+        return searchers[0].getBestScore();
+    }
+
+    /**
+     * @return The deepest iteration completed by any thread.
+     */
+    public int getMaxCompletedDepth() {
+        int depth = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            depth = Math.max(depth, searchers[i].getCompletedDepth());
+        }
+        return depth;
+    }
+
+    /**
+     * @return Share of transposition table probes that found an entry (0-1), over all threads.
+     */
+    public double getTTHitRate() {
+        long probes = 0;
+        long hits = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            probes += searchers[i].getTTProbes();
+            hits += searchers[i].getTTHits();
+        }
+        if (probes == 0) {
+            return 0;
+        }
+        return (double)hits / (double)probes;
+    }
+
+    /**
+     * @return Share of beta cutoffs that were caused by the first move searched (0-1), over all threads.
+     */
+    public double getFirstMoveCutoffRate() {
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            cutoffs += searchers[i].getCutoffs();
+            firstMoveCutoffs += searchers[i].getFirstMoveCutoffs();
+        }
+        if (cutoffs == 0) {
+            return 0;
+        }
+        return (double)firstMoveCutoffs / (double)cutoffs;
+    }
+
+    /**
+     * @return Statistics of the last search. Counts are summed over all threads; the depth, the iterations and the
+     * move are the main searcher's.
+     */
+    public SearchStats getStats() {
+        long nodes = 0;
+        long evaluations = 0;
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        long ttProbes = 0;
+        long ttHits = 0;
+        long ttStores = 0;
+        for (int i = 0; i < searchers.length; i++) {
+            nodes += searchers[i].getNodes() + searchers[i].getQuiescenceNodes();
+            evaluations += searchers[i].getEvaluations();
+            cutoffs += searchers[i].getCutoffs();
+            firstMoveCutoffs += searchers[i].getFirstMoveCutoffs();
+            ttProbes += searchers[i].getTTProbes();
+            ttHits += searchers[i].getTTHits();
+            ttStores += searchers[i].getTTStores();
+        }
+        return new SearchStats("smp", searchers[0].getBestMove(), searchTime, nodes, evaluations, getCompletedDepth(), cutoffs, firstMoveCutoffs,
+                ttProbes, ttHits, ttStores, searchers[0].getIterationNodes(), searchers[0].getIterationTimes());
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * @return One line summary of the last search.
+     */
+    public String getReport() {
+        String result = "";
+        int score = getScore();
+        if (Searcher.isWinScore(score)) {
+            int plies = Searcher.getPliesToResult(score);
+            result = (score > 0 ? "won" : "lost") + (plies >= 0 ? " in " + plies + " plies" : " (tablebase)") + ", ";
+        }
+        return result + "Depth " + getCompletedDepth() + " (max " + getMaxCompletedDepth() + ") on " + searchers.length + " thread(s), "
+                + getNodes() + " nodes (+" + getQuiescenceNodes() + " quiescence), " + getTablebaseHits() + " tablebase hits, " + getNodesPerSecond() + " nodes/s, TT hit rate " + (int)(getTTHitRate() * 100) + "%, "
+                + "first-move cutoffs " + (int)(getFirstMoveCutoffRate() * 100) + "%, "
+                + searchTime + " of " + timeManager.getSoftLimit() + " ms";
+    }
+
+    /**
+     * Measures the speedup curve: searches the SearchSuite positions with 1, 2, 4, ... threads and prints
+     * nodes per second and depth reached for each thread count.
+     * @param args Optional: maximum thread count (default all cores), search time per position in ms (default 4900).
+     */
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        long searchTime = 4900;
+        if (args.length > 0) {
+            maxThreads = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            searchTime = Long.parseLong(args[1]);
+        }
+
+        String[] positions = SearchSuite.POSITIONS;
+
+        System.out.println("threads\tnodes/s\tspeedup\tdepth\tmax depth");
+        long baseNps = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long nps = 0;
+            int depth = 0;
+            int maxDepth = 0;
+            for (int i = 0; i < positions.length; i++) {
+                LazySmpSearch search = new LazySmpSearch(threads, Global.TT_SIZE_BITS);
+                search.getMove(new GameState(positions[i]), new TimeManager(searchTime, searchTime));
+                nps += search.getNodesPerSecond() / positions.length;
+                depth += search.getCompletedDepth();
+                maxDepth += search.getMaxCompletedDepth();
+            }
+            if (threads == 1) {
+                baseNps = nps;
+            }
+            System.out.println(threads + "\t" + nps + "\t" + String.format("%.2f", (double)nps / Math.max(1, baseNps)) + "\t"
+                    + String.format("%.1f", (double)depth / positions.length) + "\t" + String.format("%.1f", (double)maxDepth / positions.length));
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package ai;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import kalaha.*;
+
+/**
+ * Monte Carlo Tree Search with UCT, as an alternative to the MiniMax searches. Each iteration descends the tree by
+ * the UCB1 formula, adds the children of the leaf it reaches, plays the game out with a PlayoutPolicy and adds the
+ * result to every node on the way down. The move played is the most visited root move.
+ *
+ * Several threads grow one shared tree (tree parallelism) without locks. The statistics of a node are packed into
+ * one long - visits in the high half and the score in half points in the low half - and updated with atomic adds.
+ * A thread counts the visit when it descends through a node and adds the score after the playout, so until then the
+ * visit counts as a loss (virtual loss) and the other threads are steered to other lines. Children are added by a
+ * compare-and-set of the node's child array; a thread that loses the race uses the winner's array.
+ *
+ * Playouts run on a per-thread copy of the board with doMove/undoMove, and stop as soon as the game is decided, so
+ * they do not allocate.
+ */
+public class MctsSearch implements SearchEngine {
+    /* Score of a playout for the player who made the move into a node, in half points */
+    private static final int WIN_SCORE = 2;
+    private static final int DRAW_SCORE = 1;
+
+    /* Visits in the high half of the packed statistics */
+    private static final long VISIT = 1L << 32;
+    private static final long SCORE_MASK = 0xFFFFFFFFL;
+
+    /* Iterations between two clock readings */
+    private static final int POLL_INTERVAL = 64;
+
+    private final Worker[] workers;
+    private final double exploration;
+
+    private Node root;
+    private TimeManager timeManager;
+    private volatile boolean stopped;
+
+    /* Results and statistics of the last search */
+    private int bestMove;
+    private long searchTime;
+
+    /**
+     * Creates a new search with the playout policy and exploration constant from the system properties.
+     * @param threads Number of search threads (1 = this thread only).
+     */
+    public MctsSearch(int threads) {
+        this(threads, Global.MCTS_POLICY, Global.MCTS_EXPLORATION);
+    }
+
+    /**
+     * Creates a new search.
+     * @param threads Number of search threads (1 = this thread only).
+     * @param policy Playout policy name (see PlayoutPolicy.create).
+     * @param exploration Exploration constant of UCB1.
+     */
+    public MctsSearch(int threads, String policy, double exploration) {
+        this.exploration = exploration;
+        workers = new Worker[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(PlayoutPolicy.create(policy, System.nanoTime() + i * 0x9E3779B97F4A7C15L));
+        }
+    }
+
+    /**
+     * Searches for the best move.
+     * @param currentBoard The current board state.
+     * @param timeManager Time control of the search. It is started here, and the search runs until the soft limit.
+     * @return The best move to make (1-6).
+     */
+    public int getMove(GameState currentBoard, TimeManager timeManager) {
+        Thread[] helpers = new Thread[workers.length];
+
+        this.timeManager = timeManager;
+        timeManager.start();
+        timeManager.allocate(currentBoard);
+        root = new Node(0, 3 - currentBoard.getNextPlayer());
+        stopped = false;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].init(currentBoard);
+        }
+
+        for (int i = 1; i < workers.length; i++) {
+            helpers[i] = new Thread(workers[i], "MCTS helper " + i);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        workers[0].run();
+
+        stopped = true;
+        for (int i = 1; i < workers.length; i++) {
+            try {
+                helpers[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        searchTime = timeManager.getElapsed();
+
+        /* The most visited root move, or the first legal move if no iteration was run */
+        bestMove = -1;
+        long bestVisits = -1;
+        Node[] children = root.children;
+        for (int i = 0; children != null && i < children.length; i++) {
+            long visits = children[i].stats >>> 32;
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                bestMove = children[i].move;
+            }
+        }
+        for (int ambo = 1; ambo <= 6 && bestMove == -1; ambo++) {
+            if (currentBoard.moveIsPossible(ambo)) {
+                bestMove = ambo;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Descends from the root by UCB1 to a leaf, expanding it if it has been visited before, plays the game out and
+     * adds the result to the nodes on the path.
+     */
+    private void iterate(Worker worker) {
+        GameState board = worker.board;
+        Node[] path = worker.path;
+        int length = 0;
+        int moves = 0;
+
+        Node node = root;
+        Node.STATS.getAndAdd(node, VISIT);
+        path[length++] = node;
+        while (!board.isTerminal() && length < path.length) {
+            Node[] children = node.children;
+            if (children == null) {
+                if (node != root && (node.stats >>> 32) <= 1) {
+                    break;
+                }
+                children = expand(node, board);
+            }
+            node = select(node, children);
+            Node.STATS.getAndAdd(node, VISIT);
+            path[length++] = node;
+            board.doMove(node.move);
+            moves++;
+        }
+
+        /* Play out until the game is decided */
+        int winner = getWinner(board);
+        while (winner == -1) {
+            board.doMove(worker.policy.selectMove(board));
+            moves++;
+            winner = getWinner(board);
+        }
+
+        for (int i = 1; i < length; i++) {
+            Node.STATS.getAndAdd(path[i], winner == 0 ? DRAW_SCORE : (winner == path[i].player ? WIN_SCORE : 0));
+        }
+        for (int i = 0; i < moves; i++) {
+            board.undoMove();
+        }
+        worker.playouts++;
+    }
+
+    /**
+     * Adds the children of a node, one per legal move in MoveGenerator order.
+     * @return The children, possibly added by another thread.
+     */
+    private Node[] expand(Node node, GameState board) {
+        int moves = MoveGenerator.generate(board);
+        Node[] children = new Node[MoveGenerator.size(moves)];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new Node(MoveGenerator.get(moves, i), board.getNextPlayer());
+        }
+        Node.CHILDREN.compareAndSet(node, null, children);
+        return node.children;
+    }
+
+    /**
+     * @return The child with the highest UCB1 value. Unvisited children are tried first.
+     */
+    private Node select(Node node, Node[] children) {
+        double logVisits = Math.log(Math.max(1, node.stats >>> 32));
+        Node best = children[0];
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < children.length; i++) {
+            long stats = children[i].stats;
+            long visits = stats >>> 32;
+            if (visits == 0) {
+                return children[i];
+            }
+            double value = (stats & SCORE_MASK) / (double)(WIN_SCORE * visits) + exploration * Math.sqrt(logVisits / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = children[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the winner once the game is decided: when it has ended, or when one house holds more than half of
+     * the seeds. When the game has ended, the seeds left in a player's ambos go to that player's house, as in
+     * GameState.gameEnded.
+     * @return 1 or 2 for the winner, 0 for a draw, or -1 if the game is not decided yet.
+     */
+    private static int getWinner(GameState board) {
+        int south = board.getHouseSeeds(1);
+        int north = board.getHouseSeeds(2);
+        if (board.isTerminal()) {
+            south += board.getAmboSeeds(1);
+            north += board.getAmboSeeds(2);
+            return south > north ? 1 : (north > south ? 2 : 0);
+        }
+
+        int total = south + north + board.getAmboSeeds(1) + board.getAmboSeeds(2);
+        if (2 * south > total) {
+            return 1;
+        }
+        if (2 * north > total) {
+            return 2;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of search threads.
+     */
+    public int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * @return Playouts by all threads during the last search.
+     */
+    public long getPlayouts() {
+        long playouts = 0;
+        for (int i = 0; i < workers.length; i++) {
+            playouts += workers[i].playouts;
+        }
+        return playouts;
+    }
+
+    /**
+     * @return Playouts by all threads during the last search - the nodes of MCTS.
+     */
+    public long getNodes() {
+        return getPlayouts();
+    }
+
+    /**
+     * @return Playouts per second over all threads during the last search.
+     */
+    public long getPlayoutsPerSecond() {
+        return getPlayouts() * 1000 / Math.max(1, searchTime);
+    }
+
+    /**
+     * @return Share of the playouts through the chosen move that it won (draws count half), for the player to move.
+     */
+    public double getWinRate() {
+        Node[] children = root.children;
+        for (int i = 0; children != null && i < children.length; i++) {
+            long stats = children[i].stats;
+            if (children[i].move == bestMove && (stats >>> 32) > 0) {
+                return (stats & SCORE_MASK) / (double)(WIN_SCORE * (stats >>> 32));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Statistics of the last search: move, time and playouts as nodes.
+     */
+    public SearchStats getStats() {
+        return new SearchStats("mcts", bestMove, searchTime, getPlayouts(), SearchStats.ABSENT);
+    }
+
+    /**
+     * @return One line summary of the last search.
+     */
+    public String getReport() {
+        return "MCTS on " + workers.length + " thread(s), " + getPlayouts() + " playouts, " + getPlayoutsPerSecond() + " playouts/s, "
+                + "win rate " + (int)(getWinRate() * 100) + "%, " + searchTime + " of " + timeManager.getSoftLimit() + " ms";
+    }
+
+    /**
+     * A node of the search tree: the position after a move.
+     */
+    private static final class Node {
+        static final AtomicLongFieldUpdater<Node> STATS = AtomicLongFieldUpdater.newUpdater(Node.class, "stats");
+        static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        /* The move into the node, and the player who made it */
+        final int move;
+        final int player;
+
+        /* Visits << 32 | score in half points, for the player who made the move */
+        volatile long stats;
+        volatile Node[] children;
+
+        Node(int move, int player) {
+            this.move = move;
+            this.player = player;
+        }
+    }
+
+    /**
+     * A search thread with its own board and playout policy.
+     */
+    private final class Worker implements Runnable {
+        final PlayoutPolicy policy;
+        final Node[] path = new Node[256];
+        GameState board;
+        long playouts;
+
+        Worker(PlayoutPolicy policy) {
+            this.policy = policy;
+        }
+
+        void init(GameState currentBoard) {
+            board = currentBoard.clone();
+            playouts = 0;
+        }
+
+        public void run() {
+            while (!stopped && !timeManager.isNodeLimitReached(playouts) && !((playouts % POLL_INTERVAL) == 0 && timeManager.isSoftLimitReached())) {
+                iterate(this);
+            }
+        }
+    }
+
+    /**
+     * Benchmarks the search: playouts per second on the SearchSuite positions with 1, 2, 4, ... threads, then a match
+     * against LazySmpSearch at equal time per move, with colours alternating between games.
+     * @param args Optional: maximum thread count (default all cores), time per move in ms (default 1000), number of
+     * games (default 10).
+     */
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long moveTime = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.println("threads\tplayouts/s\tspeedup");
+        long basePlayouts = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            MctsSearch mcts = new MctsSearch(threads);
+            long playouts = 0;
+            for (int i = 0; i < SearchSuite.POSITIONS.length; i++) {
+                mcts.getMove(new GameState(SearchSuite.POSITIONS[i]), new TimeManager(moveTime, moveTime));
+                playouts += mcts.getPlayoutsPerSecond() / SearchSuite.POSITIONS.length;
+            }
+            if (threads == 1) {
+                basePlayouts = playouts;
+            }
+            System.out.println(threads + "\t" + playouts + "\t" + String.format("%.2f", (double)playouts / Math.max(1, basePlayouts)));
+        }
+
+        int wins = 0;
+        int draws = 0;
+        MctsSearch mcts = new MctsSearch(maxThreads);
+        for (int game = 0; game < games; game++) {
+            LazySmpSearch alphaBeta = new LazySmpSearch(maxThreads, Global.TT_SIZE_BITS);
+            int mctsPlayer = game % 2 == 0 ? 1 : 2;
+            GameState board = new GameState();
+            while (!board.gameEnded()) {
+                TimeManager time = new TimeManager(moveTime, moveTime);
+                int move = board.getNextPlayer() == mctsPlayer ? mcts.getMove(board, time) : alphaBeta.getMove(board, time);
+                board.makeMove(move);
+            }
+            int winner = board.getWinner();
+            if (winner == mctsPlayer) {
+                wins++;
+            }
+            else if (winner == 0) {
+                draws++;
+            }
+            System.out.println("Game " + (game + 1) + ": MCTS as player " + mctsPlayer + ", " + board.getScore(mctsPlayer) + "-" + board.getScore(3 - mctsPlayer));
+        }
+        System.out.println("MCTS vs alfa-beta at " + moveTime + " ms per move: " + wins + " wins, " + draws + " draws, " + (games - wins - draws) + " losses");
+    }
+}
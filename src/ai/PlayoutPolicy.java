@@ -0,0 +1,99 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Move choice in the random playouts of MctsSearch. Each search thread has its own policy object with its own random
+ * number generator (xorshift), so a playout needs neither locks nor allocation.
+ */
+public abstract class PlayoutPolicy {
+    private long seed;
+
+    /**
+     * @param seed Seed of the random number generator, not 0.
+     */
+    protected PlayoutPolicy(long seed) {
+        this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /**
+     * Creates a policy by name.
+     * @param name "random" or "greedy". Unknown names give "greedy".
+     * @param seed Seed of the random number generator.
+     * @return A new policy.
+     */
+    public static PlayoutPolicy create(String name, long seed) {
+        if (name.equals("random")) {
+            return new Random(seed);
+        }
+        return new Greedy(seed);
+    }
+
+    /**
+     * Picks the move to play in a playout.
+     * @param board The game state, not ended.
+     * @return A legal move (1-6).
+     */
+    public abstract int selectMove(GameState board);
+
+    /**
+     * @param n Number of choices.
+     * @return A random number from 0 to n-1.
+     */
+    protected final int nextInt(int n) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int)((seed >>> 33) % n);
+    }
+
+    /**
+     * Picks a random ambo from a bit set (bit 1-6 for ambo 1-6), as in MoveGenerator.
+     */
+    protected final int pick(int moves) {
+        int skip = nextInt(Integer.bitCount(moves));
+        for (int ambo = 1; ambo <= 6; ambo++) {
+            if ((moves & (1 << ambo)) != 0 && skip-- == 0) {
+                return ambo;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Uniformly random legal moves, as played by RandomClient.
+     */
+    public static final class Random extends PlayoutPolicy {
+        public Random(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public int selectMove(GameState board) {
+            return pick((MoveGenerator.classify(board) >>> MoveGenerator.LEGAL_SHIFT) & MoveGenerator.ALL_MOVES);
+        }
+    }
+
+    /**
+     * The extra-turn move closest to the house if there is one, since it leaves the other extra-turn moves in place,
+     * otherwise a random capture, otherwise a random legal move (the stages of MoveGenerator).
+     */
+    public static final class Greedy extends PlayoutPolicy {
+        public Greedy(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public int selectMove(GameState board) {
+            int classes = MoveGenerator.classify(board);
+            int extraTurns = (classes >>> MoveGenerator.EXTRA_TURN_SHIFT) & MoveGenerator.ALL_MOVES;
+            if (extraTurns != 0) {
+                return 31 - Integer.numberOfLeadingZeros(extraTurns);
+            }
+            int captures = (classes >>> MoveGenerator.CAPTURE_SHIFT) & MoveGenerator.ALL_MOVES;
+            if (captures != 0) {
+                return pick(captures);
+            }
+            return pick((classes >>> MoveGenerator.LEGAL_SHIFT) & MoveGenerator.ALL_MOVES);
+        }
+    }
+}
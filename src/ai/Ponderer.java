@@ -0,0 +1,100 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Searches on the opponent's time. After our move, the position the opponent has to move in is searched in the
+ * background with the same search, and so the same transposition table, as our own moves. The search covers all
+ * opponent replies, with the predicted reply first once the first iterations are done. When it is our turn again,
+ * pondering is stopped and the normal search starts from the actual position: the subtree below the reply that was
+ * played is already in the table, so the first iterations are answered from it and the search continues where
+ * pondering left off instead of starting over.
+ */
+public class Ponderer implements Runnable {
+    private final LazySmpSearch search;
+
+    /* Position searched and time control of the current pondering search */
+    private GameState board;
+    private TimeManager timeManager;
+    private Thread thread;
+
+    /* Predicted opponent reply, set when pondering stops */
+    private int predictedMove = -1;
+
+    /**
+     * Creates a ponderer.
+     * @param search The search used for our own moves, shared so that the transposition table stays warm.
+     */
+    public Ponderer(LazySmpSearch search) {
+        this.search = search;
+    }
+
+    /**
+     * Starts pondering, unless it is not the opponent's turn.
+     * @param boardAfterMove The position after our move.
+     * @param player Our player number.
+     */
+    public void start(GameState boardAfterMove, int player) {
+        stop();
+        if (boardAfterMove.getNextPlayer() == player || boardAfterMove.isTerminal()) {
+            return;
+        }
+
+        board = boardAfterMove.clone();
+        predictedMove = -1;
+        timeManager = new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE);
+        thread = new Thread(this, "Ponder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops pondering and waits for the search to return. Does nothing if not pondering.
+     */
+    public void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        timeManager.stop();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Thread entry point - searches until stopped.
+     */
+    public void run() {
+        predictedMove = search.getMove(board, timeManager);
+    }
+
+    /**
+     * @return True while pondering.
+     */
+    public boolean isPondering() {
+        return thread != null;
+    }
+
+    /**
+     * Checks whether the opponent played the predicted reply. Call after stop().
+     * @param currentBoard The position we now have to move in.
+     * @return True if the predicted reply leads to the position.
+     */
+    public boolean isHit(GameState currentBoard) {
+        if (board == null || predictedMove < 1) {
+            return false;
+        }
+        GameState predicted = board.clone();
+        return predicted.makeMove(predictedMove) && predicted.toString().equals(currentBoard.toString());
+    }
+
+    /**
+     * @return The predicted opponent reply of the last pondering search, or -1.
+     */
+    public int getPredictedMove() {
+        return predictedMove;
+    }
+}
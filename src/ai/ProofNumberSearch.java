@@ -0,0 +1,309 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Depth-first proof-number search (df-pn) for late-game positions. Unlike the heuristic search, it only answers yes or
+ * no questions: does the player to move end the game with more than a given margin? It grows the game tree towards
+ * the positions that are cheapest to prove (proof number) or to disprove (disproof number) the answer, and stops as
+ * soon as the root is proven or disproven. With few seeds left, most lines end in a decided game within a few moves,
+ * which makes proving much cheaper than searching to the end with alfa-beta.
+ *
+ * The player to move wins if the answer is yes for a margin of 0. Otherwise the position is a draw if the answer is
+ * yes for a margin of -1, and a loss if not. Decided games, ended games and tablebase positions are leaves.
+ *
+ * Proof and disproof numbers are kept in a fixed-size table indexed by the position key, where a new entry always
+ * replaces the old one, so the solver runs in bounded memory. The solver also gives up after a number of nodes or
+ * once the soft time limit has passed, so that the normal search still has time to pick a move.
+ */
+public class ProofNumberSearch {
+    /* Results */
+    public static final int UNKNOWN = -1;
+    public static final int LOSS = 0;
+    public static final int DRAW = 1;
+    public static final int WIN = 2;
+
+    /* Deepest ply of the proof tree. The solver gives up on a line that goes deeper. */
+    private static final int MAX_PLY = 128;
+
+    /* Proof and disproof number of a proven or disproven node - kept small enough that sums of six do not overflow */
+    private static final int INFINITE = Integer.MAX_VALUE / 8;
+
+    /* Keys mixed into the position key for each root player and margin, so that their entries do not collide */
+    private static final long[][] QUESTION_KEYS = {
+        { 0L, 0L },
+        { 0x9E3779B97F4A7C15L, 0x2545F4914F6CDD1DL },
+        { 0x6A09E667F3BCC909L, 0xBB67AE8584CAA73BL }
+    };
+
+    /* Proof table */
+    private final long[] keys;
+    private final int[] proofNumbers;
+    private final int[] disproofNumbers;
+    private final int mask;
+
+    private Tablebase tablebase = Tablebase.getDefault();
+
+    /* The question being solved: the root player ends the game with a margin above this */
+    private int rootPlayer;
+    private int margin;
+    private long questionKey;
+
+    /* Best root move of the last proven question */
+    private int rootMove;
+
+    /* Proof and disproof numbers of the children of the node at each ply, so that expanding does not allocate */
+    private final int[][] childPns = new int[MAX_PLY][6];
+    private final int[][] childDns = new int[MAX_PLY][6];
+
+    /* Node budget and time control of the current solve */
+    private long nodeBudget;
+    private TimeManager timeManager;
+    private boolean aborted;
+
+    /* Results and statistics of the last solve */
+    private int result;
+    private int move;
+    private long nodes;
+    private long solveTime;
+
+    /**
+     * Creates a new solver.
+     * @param sizeBits The proof table holds 2^sizeBits entries (16 bytes each).
+     */
+    public ProofNumberSearch(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        proofNumbers = new int[1 << sizeBits];
+        disproofNumbers = new int[1 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+    }
+
+    /**
+     * Sets the endgame tablebase whose positions are leaves of the proof tree.
+     * @param tablebase The tablebase, or null to solve without one.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Tries to solve a position.
+     * @param currentBoard The position, not ended.
+     * @param nodeBudget Most nodes to expand before giving up.
+     * @param timeManager Time control, already started. The solver gives up once the soft limit has passed.
+     * @return WIN, DRAW or LOSS for the player to move, or UNKNOWN if the solver gave up.
+     */
+    public int solve(GameState currentBoard, long nodeBudget, TimeManager timeManager) {
+        GameState board = currentBoard.clone();
+        this.nodeBudget = nodeBudget;
+        this.timeManager = timeManager;
+        aborted = false;
+        nodes = 0;
+        result = UNKNOWN;
+        move = -1;
+        rootPlayer = board.getNextPlayer();
+
+        if (prove(board, 0)) {
+            result = WIN;
+            move = rootMove;
+        }
+        else if (!aborted) {
+            if (prove(board, -1)) {
+                result = DRAW;
+                move = rootMove;
+            }
+            else if (!aborted) {
+                /* Every move loses - leave the choice of move to the normal search */
+                result = LOSS;
+            }
+        }
+
+        solveTime = timeManager.getElapsed();
+        return result;
+    }
+
+    /**
+     * Answers whether the root player ends the game with a margin above the given one.
+     * @return True if proven, false if disproven or given up (see aborted).
+     */
+    private boolean prove(GameState board, int margin) {
+        this.margin = margin;
+        questionKey = QUESTION_KEYS[rootPlayer][margin + 1];
+        rootMove = -1;
+
+        /* The root is expanded even if it is a leaf, so that a decided position still gets a move */
+        mid(board, 0, INFINITE, INFINITE);
+        return !aborted && rootMove != -1;
+    }
+
+    /**
+     * Expands a node until its proof number reaches thresholdPn or its disproof number reaches thresholdDn, or the
+     * solver gives up. OR nodes, where the root player moves, are proven by one proven child; AND nodes by all.
+     * The solver also gives up at MAX_PLY.
+     * @param board The position, not a leaf. Moves are made and taken back in place.
+     * @param ply Distance from the root.
+     * @param thresholdPn Proof number threshold.
+     * @param thresholdDn Disproof number threshold.
+     */
+    private void mid(GameState board, int ply, int thresholdPn, int thresholdDn) {
+        nodes++;
+        if (ply >= MAX_PLY || nodes >= nodeBudget || ((nodes & (TimeManager.POLL_INTERVAL - 1)) == 0 && timeManager.isSoftLimitReached())) {
+            aborted = true;
+            return;
+        }
+
+        boolean orNode = board.getNextPlayer() == rootPlayer;
+        int moves = MoveGenerator.generate(board);
+        int moveCount = MoveGenerator.size(moves);
+        int[] childPn = childPns[ply];
+        int[] childDn = childDns[ply];
+        int pn;
+        int dn;
+
+        while (true) {
+            /* Collect the numbers of the children: from the leaves, the proof table or 1 for a new node */
+            for (int i = 0; i < moveCount; i++) {
+                board.doMove(MoveGenerator.get(moves, i));
+                int leaf = evaluate(board);
+                if (leaf == 1) {
+                    childPn[i] = 0;
+                    childDn[i] = INFINITE;
+                }
+                else if (leaf == -1) {
+                    childPn[i] = INFINITE;
+                    childDn[i] = 0;
+                }
+                else {
+                    int index = lookup(board);
+                    childPn[i] = index >= 0 ? proofNumbers[index] : 1;
+                    childDn[i] = index >= 0 ? disproofNumbers[index] : 1;
+                }
+                board.undoMove();
+            }
+
+            /* OR node: the easiest child to prove and all children to disprove; AND node the other way round */
+            int best = 0;
+            int second = INFINITE;
+            int sum = 0;
+            int[] select = orNode ? childPn : childDn;
+            int[] add = orNode ? childDn : childPn;
+            for (int i = 0; i < moveCount; i++) {
+                if (select[i] < select[best]) {
+                    second = select[best];
+                    best = i;
+                }
+                else if (i != best && select[i] < second) {
+                    second = select[i];
+                }
+                sum = Math.min(INFINITE, sum + add[i]);
+            }
+            pn = orNode ? childPn[best] : sum;
+            dn = orNode ? sum : childDn[best];
+
+            if (pn >= thresholdPn || dn >= thresholdDn || aborted) {
+                if (ply == 0 && pn == 0) {
+                    rootMove = MoveGenerator.get(moves, best);
+                }
+                break;
+            }
+
+            /* Search the best child until it is no longer the best, or the node reaches a threshold */
+            int childThresholdPn;
+            int childThresholdDn;
+            if (orNode) {
+                childThresholdPn = Math.min(thresholdPn, second + 1);
+                childThresholdDn = thresholdDn - dn + childDn[best];
+            }
+            else {
+                childThresholdPn = thresholdPn - pn + childPn[best];
+                childThresholdDn = Math.min(thresholdDn, second + 1);
+            }
+            board.doMove(MoveGenerator.get(moves, best));
+            mid(board, ply + 1, childThresholdPn, childThresholdDn);
+            board.undoMove();
+        }
+
+        store(board, pn, dn);
+    }
+
+    /**
+     * Decides a position without searching, if possible.
+     * @return 1 if the root player ends the game above the margin, -1 if not, 0 if it is not known yet.
+     */
+    private int evaluate(GameState board) {
+        int own = board.getHouseSeeds(rootPlayer);
+        int opponent = board.getHouseSeeds(3 - rootPlayer);
+        int left = board.getAmboSeeds(1) + board.getAmboSeeds(2);
+
+        /* Ended games have had their remaining seeds gathered, so left is 0 */
+        if (own - opponent - left > margin) {
+            return 1;
+        }
+        if (own - opponent + left <= margin) {
+            return -1;
+        }
+
+        if (tablebase != null) {
+            int finalMargin = tablebase.probe(board);
+            if (finalMargin != Tablebase.NOT_FOUND) {
+                if (board.getNextPlayer() != rootPlayer) {
+                    finalMargin = -finalMargin;
+                }
+                return finalMargin > margin ? 1 : -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Index of the position's entry in the proof table, or -1 if it is not there.
+     */
+    private int lookup(GameState board) {
+        long key = board.getHash() ^ questionKey;
+        int index = (int)key & mask;
+        return keys[index] == key ? index : -1;
+    }
+
+    private void store(GameState board, int pn, int dn) {
+        long key = board.getHash() ^ questionKey;
+        int index = (int)key & mask;
+        keys[index] = key;
+        proofNumbers[index] = pn;
+        disproofNumbers[index] = dn;
+    }
+
+    /**
+     * @return The result of the last solve: WIN, DRAW, LOSS or UNKNOWN.
+     */
+    public int getResult() {
+        return result;
+    }
+
+    /**
+     * @return A move that keeps the proven result (1-6) after a WIN or DRAW, otherwise -1.
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * @return Nodes expanded during the last solve.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Time in ms of the last solve.
+     */
+    public long getTime() {
+        return solveTime;
+    }
+
+    /**
+     * @return One line summary of the last solve.
+     */
+    public String getReport() {
+        String[] names = { "loss", "draw", "win" };
+        return "Proof-number search: " + (result == UNKNOWN ? "not solved" : "proven " + names[result]) + ", " + nodes + " nodes in " + solveTime + " ms";
+    }
+}
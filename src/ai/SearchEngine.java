@@ -0,0 +1,32 @@
+package ai;
+import kalaha.*;
+
+/**
+ * A search that picks moves, as used by AIClient. Engines only depend on GameState and TimeManager - not on the
+ * client's network or GUI code - so benchmarks and tournaments can create them with SearchEngines and drive them
+ * in-process.
+ */
+public interface SearchEngine {
+    /**
+     * Searches for the best move.
+     * @param currentBoard The current board state, not ended. It is not changed.
+     * @param timeManager Time and node limits of the search (see TimeManager.setNodeLimit). It is started here.
+     * @return The best move to make (1-6).
+     */
+    int getMove(GameState currentBoard, TimeManager timeManager);
+
+    /**
+     * @return Nodes, or playouts for MCTS, searched by all threads during the last search.
+     */
+    long getNodes();
+
+    /**
+     * @return One line summary of the last search.
+     */
+    String getReport();
+
+    /**
+     * @return Statistics of the last search.
+     */
+    SearchStats getStats();
+}
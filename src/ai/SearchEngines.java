@@ -0,0 +1,56 @@
+package ai;
+
+/**
+ * Creates search engines by name, for AIClient and for headless tools.
+ */
+public final class SearchEngines {
+    /* Engine names */
+    public static final String[] NAMES = { "smp", "ybw", "turn", "mcts" };
+
+    private SearchEngines() {
+    }
+
+    /**
+     * Creates an engine.
+     * @param name "smp" (LazySmpSearch), "ybw" (YbwSearch), "turn" (TurnSearch) or "mcts" (MctsSearch).
+     * @param threads Number of search threads, not used by "turn".
+     * @param ttSizeBits Size of the transposition table as a power of two, not used by "mcts".
+     * @return A new engine.
+     * @throws IllegalArgumentException For an unknown name.
+     */
+    public static SearchEngine create(String name, int threads, int ttSizeBits) {
+        if (name.equals("smp")) {
+            return new LazySmpSearch(threads, ttSizeBits);
+        }
+        if (name.equals("ybw")) {
+            return new YbwSearch(threads, ttSizeBits);
+        }
+        if (name.equals("turn")) {
+            return new TurnSearch(ttSizeBits);
+        }
+        if (name.equals("mcts")) {
+            return new MctsSearch(threads);
+        }
+        throw new IllegalArgumentException("Unknown search engine: " + name);
+    }
+
+    /**
+     * Adds the proof-number solver in front of an engine, with the settings from the system properties.
+     * @param engine The engine to fall back to.
+     * @return The engine with the solver in front of it, or the engine itself if the solver is turned off.
+     */
+    public static SearchEngine withSolver(SearchEngine engine) {
+        if (Global.DFPN_SEEDS <= 0) {
+            return engine;
+        }
+        return new SolvingSearch(engine, Global.DFPN_SEEDS, Global.DFPN_NODES, Global.DFPN_SIZE_BITS);
+    }
+
+    /**
+     * Creates the engine selected with the system properties (see Global.SEARCH_MODE), with the solver in front of it.
+     * @return A new engine.
+     */
+    public static SearchEngine fromSettings() {
+        return withSolver(create(Global.SEARCH_MODE, Global.SEARCH_THREADS, Global.TT_SIZE_BITS));
+    }
+}
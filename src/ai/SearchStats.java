@@ -0,0 +1,244 @@
+package ai;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Statistics of one search, as returned by SearchEngine.getStats: the move and its cost in nodes and time, how deep
+ * the search got and how well the move ordering and the transposition table worked. Engines fill in what they
+ * count and mark the rest ABSENT: only the alfa-beta engines have iterations, cutoffs and table counts. An absent
+ * field is left empty in toCsv, written as null in toJson and left out of toString.
+ *
+ * A SearchStats is immutable. toString gives one line for the client window, toCsv and toJson one record for
+ * StatsLog.
+ */
+public final class SearchStats {
+    /* Column names of toCsv */
+    public static final String CSV_HEADER = "engine,move,time_ms,nodes,evaluations,nps,depth,ebf,first_move_cutoff_rate,"
+            + "tt_probes,tt_hits,tt_stores,iteration_us";
+
+    /* Value of a count that the engine does not measure */
+    public static final int ABSENT = -1;
+
+    private final String engine;
+    private final int move;
+    private final long time;
+    private final long nodes;
+    private final long evaluations;
+    private final int depth;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final long ttProbes;
+    private final long ttHits;
+    private final long ttStores;
+    private final long[] iterationNodes;
+    private final long[] iterationTimes;
+
+    /**
+     * Creates the statistics of a search.
+     * @param engine Name of the engine (see SearchEngines.create).
+     * @param move The move played (1-6).
+     * @param time Time the search took in ms.
+     * @param nodes Nodes searched by all threads.
+     * @param evaluations Positions scored by the heuristic by all threads, or ABSENT.
+     * @param depth The deepest completed iteration, or ABSENT.
+     * @param cutoffs Beta cutoffs below the root, or ABSENT.
+     * @param firstMoveCutoffs Beta cutoffs caused by the first move searched, or ABSENT.
+     * @param ttProbes Transposition table probes, or ABSENT.
+     * @param ttHits Transposition table probes that found an entry, or ABSENT.
+     * @param ttStores Transposition table stores, or ABSENT.
+     * @param iterationNodes Nodes of each completed iteration from depth 1, or an empty array if there are no
+     * iterations.
+     * @param iterationTimes Time in microseconds of each completed iteration from depth 1, or an empty array.
+     */
+    public SearchStats(String engine, int move, long time, long nodes, long evaluations, int depth, long cutoffs, long firstMoveCutoffs,
+            long ttProbes, long ttHits, long ttStores, long[] iterationNodes, long[] iterationTimes) {
+        this.engine = engine;
+        this.move = move;
+        this.time = time;
+        this.nodes = nodes;
+        this.evaluations = evaluations;
+        this.depth = depth;
+        this.cutoffs = cutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.ttStores = ttStores;
+        this.iterationNodes = iterationNodes.clone();
+        this.iterationTimes = iterationTimes.clone();
+    }
+
+    /**
+     * Creates the statistics of a search without evaluations, iterations, cutoffs or a transposition table, which
+     * are all ABSENT.
+     * @param depth The depth reached, or ABSENT.
+     */
+    public SearchStats(String engine, int move, long time, long nodes, int depth) {
+        this(engine, move, time, nodes, ABSENT, depth, ABSENT, ABSENT, ABSENT, ABSENT, ABSENT, new long[0], new long[0]);
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * @return Time the search took in ms.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, time);
+    }
+
+    /**
+     * @return The deepest completed iteration, or ABSENT.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Effective branching factor: nodes of the last completed iteration divided by those of the one before,
+     * or ABSENT with fewer than two iterations.
+     */
+    public double getEffectiveBranchingFactor() {
+        int n = iterationNodes.length;
+        if (n < 2 || iterationNodes[n - 2] == 0) {
+            return ABSENT;
+        }
+        return (double)iterationNodes[n - 1] / (double)iterationNodes[n - 2];
+    }
+
+    /**
+     * @return Beta cutoffs below the root, or ABSENT.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return Beta cutoffs caused by the first move searched, or ABSENT.
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * @return Share of beta cutoffs that were caused by the first move searched (0-1), 0 without cutoffs, or ABSENT.
+     */
+    public double getFirstMoveCutoffRate() {
+        if (cutoffs == ABSENT) {
+            return ABSENT;
+        }
+        return cutoffs == 0 ? 0 : (double)firstMoveCutoffs / (double)cutoffs;
+    }
+
+    public long getTTProbes() {
+        return ttProbes;
+    }
+
+    public long getTTHits() {
+        return ttHits;
+    }
+
+    public long getTTStores() {
+        return ttStores;
+    }
+
+    /**
+     * @return Nodes of each completed iteration, from depth 1.
+     */
+    public long[] getIterationNodes() {
+        return iterationNodes.clone();
+    }
+
+    /**
+     * @return Time in microseconds of each completed iteration, from depth 1.
+     */
+    public long[] getIterationTimes() {
+        return iterationTimes.clone();
+    }
+
+    /**
+     * @return The statistics as one CSV line with the columns of CSV_HEADER. Absent fields are left empty and the
+     * iteration times are separated by spaces. Numbers are written the same in every locale.
+     */
+    public String toCsv() {
+        StringBuilder times = new StringBuilder();
+        for (int i = 0; i < iterationTimes.length; i++) {
+            times.append(i > 0 ? " " : "").append(iterationTimes[i]);
+        }
+        return engine + "," + move + "," + time + "," + nodes + "," + format(evaluations, "") + "," + getNodesPerSecond() + ","
+                + format(depth, "") + "," + format(getEffectiveBranchingFactor(), "%.2f", "") + ","
+                + format(getFirstMoveCutoffRate(), "%.3f", "") + "," + format(ttProbes, "") + "," + format(ttHits, "") + ","
+                + format(ttStores, "") + "," + times;
+    }
+
+    /**
+     * @return The statistics as one JSON object on a single line, with the names of CSV_HEADER. Absent fields are
+     * null.
+     */
+    public String toJson() {
+        return "{\"engine\":\"" + engine + "\",\"move\":" + move + ",\"time_ms\":" + time + ",\"nodes\":" + nodes
+                + ",\"evaluations\":" + format(evaluations, "null") + ",\"nps\":" + getNodesPerSecond() + ",\"depth\":" + format(depth, "null")
+                + ",\"ebf\":" + format(getEffectiveBranchingFactor(), "%.2f", "null")
+                + ",\"first_move_cutoff_rate\":" + format(getFirstMoveCutoffRate(), "%.3f", "null")
+                + ",\"tt_probes\":" + format(ttProbes, "null") + ",\"tt_hits\":" + format(ttHits, "null")
+                + ",\"tt_stores\":" + format(ttStores, "null")
+                + ",\"iteration_us\":" + Arrays.toString(iterationTimes).replace(" ", "") + "}";
+    }
+
+    /**
+     * @return One line summary for the client window. Absent fields are left out.
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder(engine + ": " + nodes + " nodes, " + getNodesPerSecond() + " nodes/s");
+        if (depth != ABSENT) {
+            summary.append(", depth ").append(depth);
+        }
+        if (evaluations != ABSENT) {
+            summary.append(", ").append(evaluations).append(" evals");
+        }
+        if (getEffectiveBranchingFactor() != ABSENT) {
+            summary.append(", EBF ").append(String.format("%.2f", getEffectiveBranchingFactor()));
+        }
+        if (cutoffs != ABSENT) {
+            summary.append(", first-move cutoffs ").append((int)(getFirstMoveCutoffRate() * 100)).append("%");
+        }
+        if (ttProbes != ABSENT) {
+            summary.append(", TT ").append(ttProbes).append(" probes/").append(ttHits).append(" hits/").append(ttStores).append(" stores");
+        }
+        if (iterationTimes.length > 0) {
+            summary.append(", iterations ").append(Arrays.toString(iterationTimes)).append(" us");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * @return A count as text, or the given text if it is absent.
+     */
+    private static String format(long value, String absent) {
+        return value == ABSENT ? absent : Long.toString(value);
+    }
+
+    /**
+     * @return A ratio formatted the same in every locale, or the given text if it is absent.
+     */
+    private static String format(double value, String pattern, String absent) {
+        return value == ABSENT ? absent : String.format(Locale.ROOT, pattern, value);
+    }
+}
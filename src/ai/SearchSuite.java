@@ -0,0 +1,110 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Fixed set of reference positions used to compare search changes. Running this class searches every position to
+ * a fixed depth with a single Searcher for each search algorithm and prints the number of nodes needed, so that
+ * move ordering and pruning changes can be judged by node counts rather than by the depth reached in a time limit.
+ */
+public class SearchSuite {
+    /**
+     * Reference positions: the start position and positions from random games after 6 to 34 moves.
+     */
+    public static final String[] POSITIONS = {
+        "0;6;6;6;6;6;6;0;6;6;6;6;6;6;1",
+        "2;9;9;8;1;0;0;4;9;9;2;9;1;9;2",
+        "3;2;0;1;12;4;12;4;10;2;9;0;2;11;2",
+        "5;1;4;8;3;2;17;7;0;12;2;3;5;3;1",
+        "8;0;9;10;5;1;15;5;3;4;1;0;1;10;1",
+        "7;2;2;2;5;5;9;13;3;1;2;17;0;4;1",
+        "15;1;0;17;0;1;1;23;0;2;7;1;2;2;2",
+        "11;1;2;6;6;3;4;13;1;1;5;1;4;14;2",
+        "14;1;4;1;5;5;5;16;2;4;5;4;2;4;2"
+    };
+
+    /**
+     * Drawn positions that are proven within a few plies. A helper searcher does not stop on a proven result, so it
+     * deepens cheaply until its time is up; main checks that it stops at the depth limit instead of failing.
+     */
+    public static final String[] DRAWN_POSITIONS = {
+        "33;1;1;0;0;0;1;33;1;0;1;0;0;1;1",
+        "30;2;1;0;1;0;2;30;1;2;0;1;1;1;1"
+    };
+
+    /* Algorithms compared by main: name, algorithm and whether aspiration windows are used */
+    private static final String[] NAMES = { "alphabeta", "ab+asp", "pvs", "pvs+asp", "mtdf" };
+    private static final int[] ALGORITHMS = { Searcher.ALPHA_BETA, Searcher.ALPHA_BETA, Searcher.PVS, Searcher.PVS, Searcher.MTDF };
+    private static final boolean[] ASPIRATION = { false, true, false, true, false };
+
+    /**
+     * Searches every reference position to a fixed depth with each search algorithm and prints a table of the
+     * node counts, followed by the totals, the quiescence search nodes (not included in the node counts), the total
+     * time relative to plain alfa-beta and the share of beta cutoffs caused by the first move searched. Then each
+     * drawn position is searched by a helper for up to a second, and the depth it stopped at is printed.
+     * @param args Optional: search depth (default 12).
+     */
+    public static void main(String[] args) {
+        int depth = 12;
+        if (args.length > 0) {
+            depth = Integer.parseInt(args[0]);
+        }
+
+        long[] totalNodes = new long[NAMES.length];
+        long[] totalTime = new long[NAMES.length];
+        long[] totalCutoffs = new long[NAMES.length];
+        long[] totalFirstMoveCutoffs = new long[NAMES.length];
+        long[] totalQuiescenceNodes = new long[NAMES.length];
+
+        StringBuilder header = new StringBuilder("position");
+        for (int a = 0; a < NAMES.length; a++) {
+            header.append("\t").append(NAMES[a]);
+        }
+        System.out.println(header);
+
+        for (int i = 0; i < POSITIONS.length; i++) {
+            StringBuilder line = new StringBuilder(POSITIONS[i]);
+            for (int a = 0; a < NAMES.length; a++) {
+                Searcher searcher = new Searcher(new TranspositionTable(Global.TT_SIZE_BITS), 0);
+                searcher.setMaxDepth(depth);
+                searcher.setAlgorithm(ALGORITHMS[a], ASPIRATION[a]);
+
+                long start = System.nanoTime();
+                searcher.init(new GameState(POSITIONS[i]), new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE));
+                searcher.iterate();
+                totalTime[a] += System.nanoTime() - start;
+
+                line.append("\t").append(searcher.getNodes());
+                totalNodes[a] += searcher.getNodes();
+                totalCutoffs[a] += searcher.getCutoffs();
+                totalFirstMoveCutoffs[a] += searcher.getFirstMoveCutoffs();
+                totalQuiescenceNodes[a] += searcher.getQuiescenceNodes();
+            }
+            System.out.println(line);
+        }
+
+        StringBuilder nodes = new StringBuilder("Total nodes to depth " + depth);
+        StringBuilder quiescence = new StringBuilder("Quiescence nodes");
+        StringBuilder ratio = new StringBuilder("Nodes vs alphabeta");
+        StringBuilder time = new StringBuilder("Time vs alphabeta");
+        StringBuilder firstMove = new StringBuilder("First-move cutoffs");
+        for (int a = 0; a < NAMES.length; a++) {
+            nodes.append("\t").append(totalNodes[a]);
+            quiescence.append("\t").append(totalQuiescenceNodes[a]);
+            ratio.append("\t").append(String.format("%.2f", (double)totalNodes[a] / totalNodes[0]));
+            time.append("\t").append(String.format("%.2f", (double)totalTime[a] / totalTime[0]));
+            firstMove.append("\t").append(String.format("%.1f%%", 100.0 * totalFirstMoveCutoffs[a] / Math.max(1, totalCutoffs[a])));
+        }
+        System.out.println(nodes);
+        System.out.println(quiescence);
+        System.out.println(ratio);
+        System.out.println(time);
+        System.out.println(firstMove);
+
+        for (String position : DRAWN_POSITIONS) {
+            Searcher helper = new Searcher(new TranspositionTable(Global.TT_SIZE_BITS), 1);
+            helper.init(new GameState(position), new TimeManager(1000, 1000));
+            int move = helper.iterate();
+            System.out.println("Drawn " + position + "\tmove " + move + " depth " + helper.getCompletedDepth());
+        }
+    }
+}
@@ -0,0 +1,1003 @@
+package ai;
+import java.util.Arrays;
+import kalaha.*;
+
+/**
+ * MiniMax search with alfa-beta pruning in an iterative deepening fashion, as run by a single thread.
+ * Each searcher works on its own copy of the board, so several searchers can search the same position
+ * at once while sharing one transposition table (see LazySmpSearch).
+ *
+ * The search is written in negamax form. Three algorithms can be selected: plain alfa-beta, Principal Variation
+ * Search (zero-window searches for all but the first move at a node) and MTD(f). The first two can be combined
+ * with aspiration windows around the previous iteration's score. SearchSuite compares their node counts.
+ */
+public class Searcher implements Runnable {
+    /* Search algorithms */
+    public static final int ALPHA_BETA = 0;
+    public static final int PVS = 1;
+    public static final int MTDF = 2;
+
+    /* Bound of all scores - unlike Integer.MIN_VALUE it can be negated */
+    public static final int INFINITY = 1000000;
+
+    /* Score of a won game less the plies to the win, so that quicker wins and slower losses score higher.
+     * Heuristic scores stay far below WIN_BOUND (see below); scores beyond it are wins and losses. */
+    public static final int WIN = 100000;
+
+    /* Returned by resultScore for a position whose result is not known yet */
+    private static final int NO_RESULT = Integer.MIN_VALUE;
+
+    /* Plies the quiescence search may add below the horizon */
+    private static final int QUIESCENCE_DEPTH = 2;
+
+    /* Half width of the first aspiration window, and the factor it grows by after a failed search */
+    private static final int ASPIRATION_WINDOW = 4;
+    private static final int ASPIRATION_GROWTH = 4;
+
+    private final TranspositionTable transpositionTable;
+
+    /* Searcher number - 0 is the main searcher, higher numbers are helpers */
+    private final int id;
+
+    /* Working copy of the board, searched in place */
+    private GameState board;
+
+    private TimeManager timeManager;
+
+    /* Deepest iteration to search - used for fixed-depth searches such as SearchSuite */
+    private int maxDepth = Integer.MAX_VALUE;
+
+    /* Search algorithm and whether aspiration windows are used, from -Dkalaha.algorithm and -Dkalaha.aspiration */
+    private int algorithm = getAlgorithm(Global.SEARCH_ALGORITHM);
+    private boolean aspiration = Global.ASPIRATION;
+
+    /* Whether the horizon is extended by a quiescence search, from -Dkalaha.quiescence */
+    private boolean quiescence = Global.QUIESCENCE;
+
+    /* Endgame tablebase from -Dkalaha.tablebase, or null */
+    private Tablebase tablebase = Tablebase.getDefault();
+
+    /* Set by the main thread to make a helper give up */
+    private volatile boolean stopped;
+
+    /* Set when the search noticed that it has to give up. Every node then returns at once and nothing is stored,
+     * and the iteration in progress is only used if its first root move was fully searched. */
+    private boolean aborted;
+
+    /* Set when the current iteration cut the tree at the horizon or used a stored score that was not proven - if
+     * neither happened, the whole game tree was searched to decided or ended games and the result is proven. Each
+     * child search starts with it cleared, so that a node can tell whether its own subtree reached the horizon. */
+    private boolean horizonReached;
+
+    /* Principal variation: pvTable[ply] holds the best line found from ply, collected during the search (triangular PV table).
+     * The line from the last iteration is kept in prevPv and searched first in the next one. */
+    private static final int MAX_PLY = 128;
+    private static final int WIN_BOUND = WIN - 3 * MAX_PLY;
+
+    /* Tablebase wins carry no distance, so they score below every win found by the search (WIN - MAX_PLY - ply) */
+    private static final int TABLEBASE_WIN = WIN - MAX_PLY;
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] prevPv = new int[MAX_PLY];
+    private int prevPvLength;
+    private boolean followPv;
+
+    /* Best root move of the iteration in progress, or -1 */
+    private int iterationMove;
+
+    /* Move ordering below the root: the two most recent moves that caused a cutoff at each ply (killer moves), and
+     * a history score per player and ambo that grows with every cutoff the move causes, weighted by depth squared */
+    private static final int HISTORY_LIMIT = 1 << 24;
+
+    /* Offset of the move ordering keys per MoveGenerator stage, above any history score */
+    private static final int STAGE_WEIGHT = 2 * HISTORY_LIMIT;
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[3][7];
+
+    /* Results and statistics of the last search */
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private long nodes;
+    private long ttProbes;
+    private long ttHits;
+    private long ttStores;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long quiescenceNodes;
+    private long tablebaseHits;
+    private long evaluations;
+
+    /* Nodes and time in microseconds of each completed iteration, by depth */
+    private final long[] iterationNodes = new long[MAX_PLY];
+    private final long[] iterationTimes = new long[MAX_PLY];
+
+    /**
+     * Creates a new searcher.
+     * @param transpositionTable Transposition table, possibly shared with other searchers.
+     * @param id Searcher number. Helpers (id > 0) start at a staggered depth and vary the root move order.
+     */
+    public Searcher(TranspositionTable transpositionTable, int id) {
+        this.transpositionTable = transpositionTable;
+        this.id = id;
+    }
+
+    /**
+     * Prepares a new search.
+     * @param currentBoard The board to search from.
+     * @param timeManager Time control of the search, already started.
+     */
+    public void init(GameState currentBoard, TimeManager timeManager) {
+        this.board = currentBoard.clone();
+        this.timeManager = timeManager;
+        stopped = false;
+        aborted = false;
+        pvLength[0] = 0;
+        bestMove = -1;
+        bestScore = 0;
+        completedDepth = 0;
+        nodes = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        ttStores = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        quiescenceNodes = 0;
+        tablebaseHits = 0;
+        evaluations = 0;
+        Arrays.fill(iterationNodes, 0);
+        Arrays.fill(iterationTimes, 0);
+
+        /* Killer moves and history are kept between iterations, but not between searches */
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            killers[ply][0] = 0;
+            killers[ply][1] = 0;
+        }
+        for (int player = 1; player <= 2; player++) {
+            for (int ambo = 1; ambo <= 6; ambo++) {
+                history[player][ambo] = 0;
+            }
+        }
+    }
+
+    /**
+     * Limits the iterative deepening to a fixed depth.
+     * @param maxDepth Deepest iteration to search.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Selects the search algorithm.
+     * @param algorithm ALPHA_BETA, PVS or MTDF.
+     * @param aspiration True to search with aspiration windows (not used by MTDF, which has its own windows).
+     */
+    public void setAlgorithm(int algorithm, boolean aspiration) {
+        this.algorithm = algorithm;
+        this.aspiration = aspiration;
+    }
+
+    /**
+     * Turns the quiescence search at the horizon on or off.
+     * @param quiescence True to extend the horizon with a quiescence search.
+     */
+    public void setQuiescence(boolean quiescence) {
+        this.quiescence = quiescence;
+    }
+
+    /**
+     * Sets the endgame tablebase to probe.
+     * @param tablebase The tablebase, or null to search without one.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Looks up a search algorithm by name.
+     * @param name "alphabeta", "pvs" or "mtdf".
+     * @return ALPHA_BETA, PVS or MTDF. Unknown names give PVS.
+     */
+    public static int getAlgorithm(String name) {
+        if (name.equals("alphabeta")) {
+            return ALPHA_BETA;
+        }
+        if (name.equals("mtdf")) {
+            return MTDF;
+        }
+        return PVS;
+    }
+
+    /**
+     * Makes the search return as soon as possible.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Thread entry point for helper searchers.
+     */
+    public void run() {
+        iterate();
+    }
+
+    /**
+     * Carries out the iterative deepening search until the time is up or the searcher is stopped. The main searcher
+     * starts no new iteration after the soft time limit; helpers keep going until they are stopped.
+     * The principal variation of each iteration is searched first in the next one.
+     *
+     * Each iteration is searched with the root driver of the selected algorithm: a full window for plain alfa-beta,
+     * an aspiration window around the previous iteration's score (widened and searched again when the score falls
+     * outside it), or a series of zero-window searches converging on the score for MTD(f).
+     *
+     * When the search is aborted in the middle of an iteration, the iteration's result is only used if a root move
+     * was fully searched and raised the root alpha. Such a move is at least as well founded as the previous result.
+     * Otherwise the last completed iteration decides.
+     * @return The best move to make (1-6).
+     */
+    public int iterate() {
+        int score;
+        int lastScore = 0;
+
+        /* Helpers are staggered so that every other one starts one ply deeper */
+        int curDepth = id % 2;
+
+        /* While the search has not been carried out for more than maximum search time. Helpers do not stop on a
+         * proven result, so the depth is also bounded by the per-ply arrays. */
+        while (curDepth < maxDepth && curDepth < MAX_PLY - 1 && !aborted && !stopped && !(id == 0 ? timeManager.isSoftLimitReached() : timeManager.isHardLimitReached())) {
+            /* Increase depth by 1 */
+            curDepth++;
+
+            iterationMove = -1;
+            horizonReached = false;
+            long iterationStart = System.nanoTime();
+            long startNodes = nodes;
+
+            /* Follow the previous iteration's principal variation, starting with its best root move */
+            System.arraycopy(pvTable[0], 0, prevPv, 0, pvLength[0]);
+            prevPvLength = pvLength[0];
+            pvLength[0] = 0;
+
+            /* The previous iteration's score is the guess for the windowed drivers */
+            if (algorithm == MTDF) {
+                score = mtdf(curDepth, completedDepth > 0 ? lastScore : evaluate(board));
+            }
+            else if (aspiration && completedDepth > 0) {
+                score = aspirationSearch(curDepth, lastScore);
+            }
+            else {
+                score = searchRoot(curDepth, -INFINITY, INFINITY);
+            }
+
+            /* Only fully searched root moves can have set the iteration's move */
+            if (iterationMove != -1) {
+                bestMove = iterationMove;
+            }
+            if (!aborted) {
+                completedDepth = curDepth;
+                lastScore = score;
+                bestScore = score;
+                iterationNodes[curDepth] = nodes - startNodes;
+                iterationTimes[curDepth] = (System.nanoTime() - iterationStart) / 1000;
+
+                /* A win or loss score is exact, so the outcome is proven even if other lines reached the horizon */
+                boolean proven = !horizonReached || isWinScore(score);
+
+                /* Let the time control stop early on a stable result, and always stop on a proven one */
+                if (id == 0 && (timeManager.iterationCompleted(iterationMove, score, proven) || proven)) {
+                    break;
+                }
+            }
+        }
+
+        /* Not even the first root move at depth 1 was searched - play the first legal move */
+        for (int ambo = 1; ambo <= 6 && bestMove == -1; ambo++) {
+            if (board.moveIsPossible(ambo)) {
+                bestMove = ambo;
+            }
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Searches an iteration with an aspiration window around the previous iteration's score. When the score falls
+     * outside the window, the failing side is widened and the iteration is searched again. A win or loss score
+     * outside the window opens that side fully, since growing the window would take many searches to reach it.
+     * @param depth Depth of the iteration.
+     * @param guess Score of the previous iteration.
+     * @return The score of the iteration, meaningless if the search was aborted.
+     */
+    private int aspirationSearch(int depth, int guess) {
+        int delta = ASPIRATION_WINDOW;
+        int alpha = guess - delta;
+        int beta = guess + delta;
+
+        while (true) {
+            int score = searchRoot(depth, alpha, beta);
+            if (aborted) {
+                return score;
+            }
+
+            if (score <= alpha) {
+                delta = Math.min(INFINITY, delta * ASPIRATION_GROWTH);
+                alpha = isWinScore(score) ? -INFINITY : Math.max(-INFINITY, guess - delta);
+            }
+            else if (score >= beta) {
+                delta = Math.min(INFINITY, delta * ASPIRATION_GROWTH);
+                beta = isWinScore(score) ? INFINITY : Math.min(INFINITY, guess + delta);
+            }
+            else {
+                return score;
+            }
+        }
+    }
+
+    /**
+     * Searches an iteration with MTD(f): zero-window searches around the best guess, each of which moves the lower or
+     * the upper bound of the score, until the bounds meet. The transposition table keeps the repeated searches cheap.
+     * @param depth Depth of the iteration.
+     * @param guess First guess of the score, normally the previous iteration's score.
+     * @return The score of the iteration, meaningless if the search was aborted.
+     */
+    private int mtdf(int depth, int guess) {
+        int score = guess;
+        int lowerBound = -INFINITY;
+        int upperBound = INFINITY;
+
+        while (lowerBound < upperBound) {
+            int beta = score == lowerBound ? score + 1 : score;
+            score = searchRoot(depth, beta - 1, beta);
+            if (aborted) {
+                return score;
+            }
+
+            if (score < beta) {
+                upperBound = score;
+            }
+            else {
+                lowerBound = score;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Searches the root position with a window. Every root move that raises alpha becomes the iteration's move.
+     * The iteration's move from an earlier search of the same iteration is searched first, otherwise the previous
+     * iteration's best move. The other moves follow in MoveGenerator order, which helpers rotate to diverge from the
+     * main searcher.
+     * @param depth Depth of the iteration.
+     * @param alpha Lower bound of the window.
+     * @param beta Upper bound of the window.
+     * @return The best score of the root (fail-soft), meaningless if the search was aborted.
+     */
+    private int searchRoot(int depth, int alpha, int beta) {
+        int player = board.getNextPlayer();
+        int bestScore = -INFINITY;
+        int movesSearched = 0;
+        int score;
+
+        int firstMove = iterationMove != -1 ? iterationMove : (prevPvLength > 0 ? prevPv[0] : 0);
+        followPv = prevPvLength > 0 && firstMove == prevPv[0];
+
+        int moves = MoveGenerator.generate(board);
+        int moveCount = MoveGenerator.size(moves);
+        for (int i = -1; i < moveCount; i++) {
+            int ambo = i == -1 ? firstMove : MoveGenerator.get(moves, (i + id) % moveCount);
+            if (ambo == 0 || (i >= 0 && ambo == firstMove)) {
+                continue;
+            }
+
+            /* Check if move is possible, and if so...*/
+            if (!board.doMove(ambo)) {
+                continue;
+            }
+            nodes++;
+            score = searchMove(board, player, depth - 1, 1, alpha, beta, movesSearched == 0);
+            board.undoMove();
+            followPv = false;
+            movesSearched++;
+
+            /* The score of an aborted subtree is meaningless */
+            if (aborted) {
+                break;
+            }
+
+            bestScore = Integer.max(bestScore, score);
+
+            /* A score above alpha is exact or a lower bound, so the move is better than every move before it */
+            if (score > alpha) {
+                alpha = score;
+                iterationMove = ambo;
+                updatePv(0, ambo);
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Sets the principal variation at a ply to a move followed by the principal variation found below it.
+     */
+    private void updatePv(int ply, int ambo) {
+        if (ply >= MAX_PLY - 1) {
+            return;
+        }
+        pvTable[ply][0] = ambo;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    /**
+     * Searches the position after a move that has just been made. With PVS, every move but the first is searched
+     * with a zero window, which only tells whether it is better than alpha; only a move that turns out better is
+     * searched again with the full window.
+     * @param currentBoard The board after the move.
+     * @param player The player who made the move.
+     * @param depth Remaining depth below the move.
+     * @param ply Distance of the position from the root.
+     * @param alpha Lower bound of the window, from the point of view of the player who made the move.
+     * @param beta Upper bound of the window, from the point of view of the player who made the move.
+     * @param firstMove True for the first move searched at a node.
+     * @return The score of the move from the point of view of the player who made it.
+     */
+    private int searchMove(GameState currentBoard, int player, int depth, int ply, int alpha, int beta, boolean firstMove) {
+        if (firstMove || algorithm != PVS || beta - alpha <= 1) {
+            return searchChild(currentBoard, player, depth, ply, alpha, beta);
+        }
+
+        int score = searchChild(currentBoard, player, depth, ply, alpha, alpha + 1);
+        if (score > alpha && score < beta && !aborted) {
+            score = searchChild(currentBoard, player, depth, ply, alpha, beta);
+        }
+        return score;
+    }
+
+    /**
+     * Calls negaMax for the position after a move. The score is only negated if the turn passed to the opponent -
+     * after an extra turn, the same player moves again.
+     */
+    private int searchChild(GameState currentBoard, int player, int depth, int ply, int alpha, int beta) {
+        boolean outerHorizon = horizonReached;
+        horizonReached = false;
+        int score;
+        if (currentBoard.getNextPlayer() == player) {
+            score = negaMax(currentBoard, depth, ply, alpha, beta);
+        }
+        else {
+            score = -negaMax(currentBoard, depth, ply, -beta, -alpha);
+        }
+        horizonReached |= outerHorizon;
+        return score;
+    }
+
+    /**
+     *
+     * This function implements the means for performing the recursive DFS with alfa-beta pruning, in negamax form:
+     * scores are always from the point of view of the player to move, so both players are handled by the same code.
+     * The DFS search is carried out in an iterative deepening fashion.
+     *
+     * @param currentBoard The current board state. Moves are made and taken back in place, so the board is unchanged on return.
+     * @param depth Current depth of DFS.
+     * @param ply Distance from the root, used to follow and collect the principal variation.
+     * @param alpha The score the player to move is already sure of. Used for pruning when compared to beta.
+     * @param beta The score the opponent is already sure of. Used for pruning when compared to alpha.
+     * @return Returns the best score of the node sub-tree for the player to move (fail-soft), or 0 if the search was aborted.
+     *
+     */
+    public int negaMax(GameState currentBoard, int depth, int ply, int alpha, int beta) {
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        int score;
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int ttMove = 0;
+        int pvMove = 0;
+        int movesSearched = 0;
+        int player = currentBoard.getNextPlayer();
+
+        if (ply < MAX_PLY) {
+            pvLength[ply] = 0;
+        }
+
+        /* Unwind at once when the search has been aborted */
+        if (checkAbort()) {
+            return 0;
+        }
+
+        /* Ended and decided games are scored exactly, whatever the remaining depth */
+        int result = resultScore(currentBoard, ply);
+        if (result != NO_RESULT) {
+            return result;
+        }
+
+        /* The outcome of positions with few seeds left is looked up in the endgame tablebase */
+        if (tablebase != null) {
+            int margin = tablebase.probe(currentBoard);
+            if (margin != Tablebase.NOT_FOUND) {
+                tablebaseHits++;
+                return margin > 0 ? TABLEBASE_WIN - ply : (margin < 0 ? -(TABLEBASE_WIN - ply) : 0);
+            }
+        }
+
+        /* Bounds on the result: a win or loss can come no sooner than the next ply, and a player whose house holds
+         * half of the seeds can no longer lose. Cut off if they are outside the window. */
+        int total = getTotalSeeds(currentBoard);
+        int upperBound = 2 * currentBoard.getHouseSeeds(3 - player) >= total ? 0 : WIN - ply - 1;
+        if (upperBound <= alpha) {
+            return upperBound;
+        }
+        int lowerBound = 2 * currentBoard.getHouseSeeds(player) >= total ? 0 : -(WIN - ply - 1);
+        if (lowerBound >= beta) {
+            return lowerBound;
+        }
+
+        /* If the leaf node has been reached, return heuristic score */
+        if (depth == 0) {
+            horizonReached = true;
+            if (quiescence) {
+                return quiesce(currentBoard, ply, QUIESCENCE_DEPTH, alpha, beta);
+            }
+            evaluations++;
+            return evaluate(currentBoard);
+        }
+
+        /* Probe the transposition table before expanding any children */
+        long entry = transpositionTable.probe(currentBoard.getHash());
+        ttProbes++;
+        if (entry != 0) {
+            ttHits++;
+            ttMove = TranspositionTable.getMove(entry);
+
+            /* The stored score can only be used if it was searched at least as deep as we are about to, or proven */
+            boolean proven = TranspositionTable.isProven(entry);
+            if (proven || TranspositionTable.getDepth(entry) >= depth) {
+                int ttScore = fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+
+                /* Unless proven, the stored score may come from a search that was cut at its horizon */
+                if (!proven) {
+                    horizonReached = true;
+                }
+
+                if (bound == TranspositionTable.EXACT) {
+                    return ttScore;
+                }
+                if (bound == TranspositionTable.LOWER) {
+                    alpha = Integer.max(alpha, ttScore);
+                }
+                if (bound == TranspositionTable.UPPER) {
+                    beta = Integer.min(beta, ttScore);
+                }
+                if (beta <= alpha) {
+                    return ttScore;
+                }
+            }
+        }
+
+        /* While still on the previous iteration's principal variation, its move is searched first */
+        if (followPv && ply < prevPvLength) {
+            pvMove = prevPv[ply];
+        }
+        else {
+            followPv = false;
+        }
+
+        /* Recursively traverse each respective node (game move) tree, best moves first (see nextMove). Most nodes are
+         * cut off by one of the first moves, so the moves are only classified once those have been tried. */
+        int untried = MoveGenerator.ALL_MOVES;
+        int classes = 0;
+        while (untried != 0) {
+            int ambo = nextMove(player, ply, pvMove, ttMove, untried, classes);
+            if (ambo == 0) {
+                classes = MoveGenerator.classify(currentBoard);
+                untried &= classes >>> MoveGenerator.LEGAL_SHIFT;
+                continue;
+            }
+            untried &= ~(1 << ambo);
+
+            /* Check if move is possible, and if so...*/
+            if (!currentBoard.doMove(ambo)) {
+                continue;
+            }
+            nodes++;
+            score = searchMove(currentBoard, player, depth - 1, ply + 1, alpha, beta, movesSearched == 0);
+            currentBoard.undoMove();
+            followPv = false;
+            movesSearched++;
+
+            if (aborted) {
+                return 0;
+            }
+
+            /* Calculate best score for the player to move */
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = ambo;
+                updatePv(ply, ambo);
+            }
+            alpha = Integer.max(score, alpha);
+
+            /* Prune away the unnecessary branch */
+            if (beta <= alpha) {
+                updateCutoff(player, ply, depth, ambo, movesSearched == 1);
+            	break;
+            }
+        }
+
+        /* Only fully searched nodes get here, so the result can be stored */
+        int bound;
+        if (bestScore <= alphaOrig) {
+            bound = TranspositionTable.UPPER;
+        }
+        else if (bestScore >= betaOrig) {
+            bound = TranspositionTable.LOWER;
+        }
+        else {
+            bound = TranspositionTable.EXACT;
+        }
+        transpositionTable.store(currentBoard.getHash(), depth, bound, toTable(bestScore, ply), bestMove, !horizonReached);
+        ttStores++;
+
+        return bestScore;
+    }
+
+    /**
+     * Quiescence search below the horizon. Only extra-turn moves and captures are searched, since the heuristic
+     * misjudges a position where the player to move is in the middle of an extra-turn chain or can capture. The player
+     * to move may also stand pat on the heuristic score, as the quiet moves are not searched. Nodes are counted in
+     * quiescenceNodes, apart from the main search.
+     * @param currentBoard The current board state, not ended or decided.
+     * @param ply Distance from the root.
+     * @param qDepth Plies left before the quiescence search stops.
+     * @param alpha The score the player to move is already sure of.
+     * @param beta The score the opponent is already sure of.
+     * @return The best score for the player to move (fail-soft).
+     */
+    private int quiesce(GameState currentBoard, int ply, int qDepth, int alpha, int beta) {
+        int player = currentBoard.getNextPlayer();
+
+        /* Stand pat */
+        evaluations++;
+        int bestScore = evaluate(currentBoard);
+        if (bestScore >= beta || qDepth == 0) {
+            return bestScore;
+        }
+        alpha = Integer.max(alpha, bestScore);
+
+        /* Extra-turn moves from the ambo closest to the house first, since they leave the other ones unchanged */
+        int classes = MoveGenerator.classify(currentBoard);
+        int extraTurns = (classes >>> MoveGenerator.EXTRA_TURN_SHIFT) & MoveGenerator.ALL_MOVES;
+        int captures = (classes >>> MoveGenerator.CAPTURE_SHIFT) & MoveGenerator.ALL_MOVES;
+        for (int i = 12; i >= 1; i--) {
+            int ambo = i > 6 ? i - 6 : i;
+            if (((i > 6 ? extraTurns : captures) & (1 << ambo)) == 0) {
+                continue;
+            }
+
+            currentBoard.doMove(ambo);
+            quiescenceNodes++;
+            int score = resultScore(currentBoard, ply + 1);
+            if (score != NO_RESULT) {
+                if (currentBoard.getNextPlayer() != player) {
+                    score = -score;
+                }
+            }
+            else if (currentBoard.getNextPlayer() == player) {
+                score = quiesce(currentBoard, ply + 1, qDepth - 1, alpha, beta);
+            }
+            else {
+                score = -quiesce(currentBoard, ply + 1, qDepth - 1, -beta, -alpha);
+            }
+            currentBoard.undoMove();
+
+            if (score > bestScore) {
+                bestScore = score;
+                alpha = Integer.max(alpha, score);
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Picks the next move to try at a node: the principal variation move, then the stored best move, then the killer
+     * moves of the ply, then the remaining moves in the stages of MoveGenerator - extra-turn moves, captures, the
+     * rest - and within a stage by their history score (ties in ambo order).
+     * @param player The player to move.
+     * @param ply Distance from the root.
+     * @param pvMove Move of the previous iteration's principal variation, or 0.
+     * @param ttMove Best move from the transposition table, or 0.
+     * @param untried Bit set of the ambos not tried yet, not empty. Until the moves are classified it may hold illegal ones.
+     * @param classes The moves classified by MoveGenerator.classify, or 0 if not classified yet.
+     * @return The ambo to try next (1-6), or 0 if the moves have to be classified first.
+     */
+    private int nextMove(int player, int ply, int pvMove, int ttMove, int untried, int classes) {
+        int bestAmbo = 0;
+        int bestKey = -1;
+
+        for (int ambo = 1; ambo <= 6; ambo++) {
+            if ((untried & (1 << ambo)) == 0) {
+                continue;
+            }
+
+            int key;
+            if (ambo == pvMove) {
+                key = Integer.MAX_VALUE;
+            }
+            else if (ambo == ttMove) {
+                key = Integer.MAX_VALUE - 1;
+            }
+            else if (ply < MAX_PLY && ambo == killers[ply][0]) {
+                key = Integer.MAX_VALUE - 2;
+            }
+            else if (ply < MAX_PLY && ambo == killers[ply][1]) {
+                key = Integer.MAX_VALUE - 3;
+            }
+            else if (classes == 0) {
+                continue;
+            }
+            else if ((classes & (1 << (MoveGenerator.EXTRA_TURN_SHIFT + ambo))) != 0) {
+                key = 2 * STAGE_WEIGHT + history[player][ambo];
+            }
+            else if ((classes & (1 << (MoveGenerator.CAPTURE_SHIFT + ambo))) != 0) {
+                key = STAGE_WEIGHT + history[player][ambo];
+            }
+            else {
+                key = history[player][ambo];
+            }
+
+            if (key > bestKey) {
+                bestKey = key;
+                bestAmbo = ambo;
+            }
+        }
+        return bestAmbo;
+    }
+
+    /**
+     * Records a beta cutoff: the move becomes the first killer move of the ply and its history score grows.
+     * When a history score passes HISTORY_LIMIT, all scores of the player are halved so that old cutoffs fade.
+     * @param firstMove True if the cutoff was caused by the first move searched at the node.
+     */
+    private void updateCutoff(int player, int ply, int depth, int ambo, boolean firstMove) {
+        cutoffs++;
+        if (firstMove) {
+            firstMoveCutoffs++;
+        }
+
+        if (ply < MAX_PLY && killers[ply][0] != ambo) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = ambo;
+        }
+
+        history[player][ambo] += depth * depth;
+        if (history[player][ambo] > HISTORY_LIMIT) {
+            for (int i = 1; i <= 6; i++) {
+                history[player][i] /= 2;
+            }
+        }
+    }
+
+    /**
+     * @return The heuristic value of a position from the point of view of the player to move. A player who holds half
+     * of the seeds in the house can no longer lose, so the value is kept at or above a draw for that player and at or
+     * below a draw for the opponent.
+     */
+    private static int evaluate(GameState currentBoard) {
+        int score = heuristicCalc(currentBoard);
+        int player = currentBoard.getNextPlayer();
+        if (player == 2) {
+            score = -score;
+        }
+
+        int total = getTotalSeeds(currentBoard);
+        if (2 * currentBoard.getHouseSeeds(player) >= total) {
+            score = Math.max(score, 0);
+        }
+        if (2 * currentBoard.getHouseSeeds(3 - player) >= total) {
+            score = Math.min(score, 0);
+        }
+        return score;
+    }
+
+    /**
+     * Scores ended and decided games exactly. A game is decided as soon as one house holds more than half of the
+     * seeds (36 of 72), since seeds never leave a house.
+     * @param currentBoard The current board state.
+     * @param ply Distance from the root.
+     * @return WIN less ply for a won game, the negated value for a lost game and 0 for a drawn game, from the point
+     * of view of the player to move. NO_RESULT if the result is not known yet.
+     */
+    private static int resultScore(GameState currentBoard, int ply) {
+        int player = currentBoard.getNextPlayer();
+        int total = getTotalSeeds(currentBoard);
+        int own = currentBoard.getHouseSeeds(player);
+        int opponent = currentBoard.getHouseSeeds(3 - player);
+
+        if (2 * own > total) {
+            return WIN - ply;
+        }
+        if (2 * opponent > total) {
+            return -(WIN - ply);
+        }
+        /* Ended games have had their remaining seeds gathered, so equal houses hold half each */
+        if (currentBoard.isTerminal()) {
+            return 0;
+        }
+        return NO_RESULT;
+    }
+
+    /**
+     * @return The number of seeds in play, 72 in a standard game.
+     */
+    private static int getTotalSeeds(GameState currentBoard) {
+        return currentBoard.getHouseSeeds(1) + currentBoard.getHouseSeeds(2) + currentBoard.getAmboSeeds(1) + currentBoard.getAmboSeeds(2);
+    }
+
+    /**
+     * @param score A score from the search.
+     * @return True if the score is that of a won or lost game.
+     */
+    public static boolean isWinScore(int score) {
+        return score >= WIN_BOUND || score <= -WIN_BOUND;
+    }
+
+    /**
+     * @param score A win or loss score.
+     * @return Plies from the root to the end of the game, or -1 if the distance is not known (a tablebase result).
+     */
+    public static int getPliesToResult(int score) {
+        int plies = WIN - Math.abs(score);
+        return plies < MAX_PLY ? plies : -1;
+    }
+
+    /**
+     * Win and loss scores count the plies from the root, but an entry in the transposition table may be reached at
+     * another ply. They are therefore stored counting from the stored position, and converted back when probed.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        }
+        if (score <= -WIN_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     *
+     * This function calculates the heuristic value for each respective node.
+     *
+     * @param currentBoard The current board state.
+     * @return Heuristic value based on current scores and number of seeds in the ambos.
+     * High values for player 1 (maximizing player), low values for player 2 (minimizing player).
+     */
+
+    public static int heuristicCalc(GameState currentBoard) {
+        /* The number of seeds in each player's ambos, kept up to date by GameState */
+        int player1Seeds = currentBoard.getAmboSeeds(1);
+        int player2Seeds = currentBoard.getAmboSeeds(2);
+
+        /* Adding the number of seeds in each player's house (these seeds are worth twice as much) */
+        player1Seeds += (currentBoard.getHouseSeeds(1) * 2);
+        player2Seeds += (currentBoard.getHouseSeeds(2) * 2);
+
+        /* Returning the difference in seed values between player 1 and player 2 */
+        return player1Seeds - player2Seeds;
+    }
+
+    /**
+     * Checks whether the search has been stopped or has passed the hard time limit, and if so aborts it.
+     * The clock is only read every TimeManager.POLL_INTERVAL nodes.
+     * @return True if the search is aborted.
+     */
+    private boolean checkAbort() {
+        if (!aborted && (stopped || timeManager.poll(nodes))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return Number of positions looked up in the endgame tablebase during the last search.
+     */
+    public long getTablebaseHits() {
+        return tablebaseHits;
+    }
+
+    /**
+     * @return Score of the last completed iteration from the point of view of the player to move (see isWinScore).
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * @return The deepest iteration that finished before the time was up.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTTProbes() {
+        return ttProbes;
+    }
+
+    public long getTTHits() {
+        return ttHits;
+    }
+
+    public long getTTStores() {
+        return ttStores;
+    }
+
+    /**
+     * @return Number of nodes searched by the quiescence search, not included in getNodes.
+     */
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    /**
+     * @return Number of beta cutoffs below the root.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return Number of beta cutoffs below the root that were caused by the first move searched.
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * @return Number of positions scored by the heuristic, at the horizon and in the quiescence search.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return Nodes searched by each completed iteration, from depth 1 to getCompletedDepth().
+     */
+    public long[] getIterationNodes() {
+        return Arrays.copyOfRange(iterationNodes, 1, completedDepth + 1);
+    }
+
+    /**
+     * @return Time in microseconds of each completed iteration, from depth 1 to getCompletedDepth().
+     */
+    public long[] getIterationTimes() {
+        return Arrays.copyOfRange(iterationTimes, 1, completedDepth + 1);
+    }
+}
@@ -0,0 +1,84 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Tries to prove the result with ProofNumberSearch once few seeds are left, and plays a proven win or draw at once.
+ * The solver may use up to half of the soft limit. If it gives up or finds a loss, another engine picks the move
+ * with the time that is left.
+ */
+public class SolvingSearch implements SearchEngine {
+    private final SearchEngine fallback;
+    private final ProofNumberSearch solver;
+    private final int maxSeeds;
+    private final long nodeBudget;
+
+    /* Whether the last move was the solver's, and whether the solver was tried */
+    private boolean solved;
+    private boolean tried;
+
+    /**
+     * Creates a new solving search.
+     * @param fallback The engine used when the solver does not find a win or draw.
+     * @param maxSeeds The solver is tried once at most this many seeds are left in the ambos.
+     * @param nodeBudget Most nodes the solver expands per move.
+     * @param sizeBits The solver's table holds 2^sizeBits entries.
+     */
+    public SolvingSearch(SearchEngine fallback, int maxSeeds, long nodeBudget, int sizeBits) {
+        this.fallback = fallback;
+        this.solver = new ProofNumberSearch(sizeBits);
+        this.maxSeeds = maxSeeds;
+        this.nodeBudget = nodeBudget;
+    }
+
+    public int getMove(GameState currentBoard, TimeManager timeManager) {
+        solved = false;
+        tried = currentBoard.getAmboSeeds(1) + currentBoard.getAmboSeeds(2) <= maxSeeds;
+        if (!tried) {
+            return fallback.getMove(currentBoard, timeManager);
+        }
+
+        TimeManager solverTime = new TimeManager(timeManager.getBaseSoftLimit() / 2, timeManager.getHardLimit());
+        int result = solver.solve(currentBoard, nodeBudget, solverTime);
+        if (result == ProofNumberSearch.WIN || result == ProofNumberSearch.DRAW) {
+            solved = true;
+            return solver.getMove();
+        }
+        return fallback.getMove(currentBoard, timeManager.remaining(solverTime.getElapsed()));
+    }
+
+    /**
+     * @return The engine used when the solver does not find a win or draw.
+     */
+    public SearchEngine getFallback() {
+        return fallback;
+    }
+
+    public long getNodes() {
+        return (tried ? solver.getNodes() : 0) + (solved ? 0 : fallback.getNodes());
+    }
+
+    /**
+     * @return Statistics of the proof-number search if it picked the move, otherwise of the other engine. If the
+     * proof-number search was tried first, its nodes and time are added to the other engine's, so that the
+     * statistics cover the whole move.
+     */
+    public SearchStats getStats() {
+        if (solved) {
+            return new SearchStats("dfpn", solver.getMove(), solver.getTime(), solver.getNodes(), SearchStats.ABSENT);
+        }
+        SearchStats stats = fallback.getStats();
+        if (!tried) {
+            return stats;
+        }
+        return new SearchStats(stats.getEngine(), stats.getMove(), stats.getTime() + solver.getTime(), stats.getNodes() + solver.getNodes(),
+                stats.getEvaluations(), stats.getDepth(), stats.getCutoffs(), stats.getFirstMoveCutoffs(), stats.getTTProbes(),
+                stats.getTTHits(), stats.getTTStores(), stats.getIterationNodes(), stats.getIterationTimes());
+    }
+
+    public String getReport() {
+        if (!tried) {
+            return fallback.getReport();
+        }
+        return solver.getReport() + (solved ? "" : "\n" + fallback.getReport());
+    }
+}
@@ -0,0 +1,70 @@
+package ai;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Appends the SearchStats of every move to a file: JSON lines if the file name ends with ".jsonl", otherwise CSV
+ * with a header line. The file rolls over when it passes a size limit - it is renamed to the same name with ".1"
+ * added, replacing the previous one, and a new file is started - so at most two files are kept.
+ */
+public class StatsLog {
+    private final File file;
+    private final long maxSize;
+    private final boolean json;
+
+    /**
+     * Creates a log. Nothing is written until the first record.
+     * @param file The file to append to.
+     * @param maxSize Size in bytes after which the file rolls over.
+     */
+    public StatsLog(File file, long maxSize) {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.json = file.getName().endsWith(".jsonl");
+    }
+
+    /**
+     * Creates the log set with -Dkalaha.stats, if any.
+     * @return The log, or null if no file is set.
+     */
+    public static StatsLog fromSettings() {
+        if (Global.STATS_FILE.isEmpty()) {
+            return null;
+        }
+        return new StatsLog(new File(Global.STATS_FILE), Global.STATS_MAX_SIZE);
+    }
+
+    /**
+     * Appends the statistics of a search, rolling the file over first if it has passed the size limit.
+     * @param stats The statistics.
+     * @throws IOException If the file can not be written.
+     */
+    public synchronized void write(SearchStats stats) throws IOException {
+        if (file.length() >= maxSize) {
+            File old = new File(file.getPath() + ".1");
+            if ((old.exists() && !old.delete()) || !file.renameTo(old)) {
+                throw new IOException("Could not roll over " + file);
+            }
+        }
+
+        boolean header = !json && file.length() == 0;
+        Writer writer = new FileWriter(file, true);
+        try {
+            if (header) {
+                writer.write(SearchStats.CSV_HEADER + "\n");
+            }
+            writer.write((json ? stats.toJson() : stats.toCsv()) + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return The file written to.
+     */
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,214 @@
+package ai;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import kalaha.*;
+
+/**
+ * Endgame tablebase: the exact outcome of every position with at most getMaxSeeds() seeds left in the ambos, as made
+ * by TablebaseGenerator. The seeds in the houses do not change what is left to win, so a position is stored by its
+ * ambos alone, seen from the player to move: the six own ambos and then the six ambos of the opponent. Each position
+ * holds one byte, the number of seeds the player to move wins in the rest of the game less those the opponent wins.
+ *
+ * The positions with n seeds form layer n. Within a layer, the twelve ambos are a composition of n, which is ranked
+ * with the combinatorial number system: the ambos are n seeds divided by 11 bars, and the bar positions form an
+ * 11-combination of n + 11 places. The index is perfect, so layer n holds exactly C(n + 11, 11) bytes and layers
+ * 0 to n hold C(n + 12, 12) bytes. The file is a header (magic number and maximum seeds) followed by the layers.
+ *
+ * Every layer is memory-mapped on its own, so that the file can be larger than one mapping and is only read into
+ * memory as it is probed. A probe is an absolute read of the mapping, so many search threads can probe at once
+ * without locking.
+ */
+public class Tablebase {
+    /* Largest number of seeds a tablebase can hold, so that each layer fits in one mapping (5.6 GB in all) */
+    public static final int MAX_SEEDS = 28;
+
+    /* Returned by probe for a position not in the tablebase */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    /* "KTB1" */
+    private static final int MAGIC = 0x4B544231;
+    private static final int HEADER_SIZE = 8;
+
+    /* Binomial coefficients C(n, k) for n up to MAX_SEEDS + 12 */
+    private static final long[][] BINOMIAL = new long[MAX_SEEDS + 13][13];
+    static {
+        for (int n = 0; n < BINOMIAL.length; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, 12); k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    /* The tablebase of -Dkalaha.tablebase, loaded on first use */
+    private static Tablebase defaultTablebase;
+    private static boolean defaultLoaded;
+
+    private final int maxSeeds;
+    private final MappedByteBuffer[] layers;
+
+    /**
+     * Opens a tablebase file.
+     * @param file The tablebase file.
+     * @param writable True to map the file for writing, as TablebaseGenerator does.
+     * @throws IOException If the file can not be read or is not a tablebase.
+     */
+    public Tablebase(File file, boolean writable) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException(file + " is not a tablebase");
+            }
+            maxSeeds = raf.readInt();
+            if (maxSeeds < 0 || maxSeeds > MAX_SEEDS || raf.length() < HEADER_SIZE + getSize(maxSeeds)) {
+                throw new IOException(file + " is truncated or damaged");
+            }
+            layers = map(raf.getChannel(), maxSeeds, writable);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Creates an empty tablebase file of the right size, to be filled by TablebaseGenerator.
+     * @param file The file to create. An existing file is overwritten.
+     * @param maxSeeds The tablebase holds all positions with up to this many seeds in the ambos.
+     * @throws IOException If the file can not be written.
+     */
+    public static void create(File file, int maxSeeds) throws IOException {
+        if (maxSeeds < 0 || maxSeeds > MAX_SEEDS) {
+            throw new IllegalArgumentException("Seeds must be 0-" + MAX_SEEDS);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + getSize(maxSeeds));
+            raf.writeInt(MAGIC);
+            raf.writeInt(maxSeeds);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Maps each layer of the file. The mappings stay valid when the file is closed.
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, int maxSeeds, boolean writable) throws IOException {
+        MappedByteBuffer[] layers = new MappedByteBuffer[maxSeeds + 1];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+            long offset = HEADER_SIZE + (seeds == 0 ? 0 : getSize(seeds - 1));
+            layers[seeds] = channel.map(mode, offset, getLayerSize(seeds));
+        }
+        return layers;
+    }
+
+    /**
+     * Returns the tablebase set with -Dkalaha.tablebase, which is shared by all searches.
+     * @return The tablebase, or null if there is no such file or it can not be read.
+     */
+    public static synchronized Tablebase getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            File file = new File(Global.TABLEBASE);
+            if (file.isFile()) {
+                try {
+                    defaultTablebase = new Tablebase(file, false);
+                } catch (IOException e) {
+                    System.err.println("Tablebase not loaded: " + e.getMessage());
+                }
+            }
+        }
+        return defaultTablebase;
+    }
+
+    /**
+     * Looks up the outcome of a position.
+     * @param board The position.
+     * @return The final number of seeds in the house of the player to move less those in the opponent's house, with
+     * perfect play from both sides. NOT_FOUND if there are too many seeds left for the tablebase.
+     */
+    public int probe(GameState board) {
+        int seeds = board.getAmboSeeds(1) + board.getAmboSeeds(2);
+        if (seeds > maxSeeds) {
+            return NOT_FOUND;
+        }
+
+        int player = board.getNextPlayer();
+        int opponent = 3 - player;
+
+        /* Rank the bar positions; the twelfth ambo holds the rest of the seeds */
+        long index = 0;
+        int sum = 0;
+        for (int k = 0; k < 11; k++) {
+            sum += k < 6 ? board.getSeeds(k + 1, player) : board.getSeeds(k - 5, opponent);
+            index += BINOMIAL[sum + k][k + 1];
+        }
+        return board.getHouseSeeds(player) - board.getHouseSeeds(opponent) + layers[seeds].get((int)index);
+    }
+
+    /**
+     * Ranks the ambos of a position within its layer.
+     * @param pits The twelve ambos: those of the player to move (ambo 1-6), then those of the opponent.
+     * @return Index of the position within its layer.
+     */
+    public static int getIndex(int[] pits) {
+        long index = 0;
+        int sum = 0;
+        for (int k = 0; k < 11; k++) {
+            sum += pits[k];
+            index += BINOMIAL[sum + k][k + 1];
+        }
+        return (int)index;
+    }
+
+    /**
+     * @param seeds Seeds in the ambos.
+     * @return Number of positions with exactly this many seeds in the ambos, C(seeds + 11, 11).
+     */
+    public static long getLayerSize(int seeds) {
+        return BINOMIAL[seeds + 11][11];
+    }
+
+    /**
+     * @param maxSeeds Largest number of seeds in the ambos.
+     * @return Number of positions with up to this many seeds in the ambos, C(maxSeeds + 12, 12).
+     */
+    public static long getSize(int maxSeeds) {
+        return BINOMIAL[maxSeeds + 12][12];
+    }
+
+    /**
+     * Reads a stored value, for TablebaseGenerator.
+     * @return The seeds the player to move wins in the rest of the game less those the opponent wins.
+     */
+    int get(int seeds, int index) {
+        return layers[seeds].get(index);
+    }
+
+    /**
+     * Writes a value, for TablebaseGenerator. Threads must write different positions.
+     */
+    void set(int seeds, int index, int value) {
+        layers[seeds].put(index, (byte)value);
+    }
+
+    /**
+     * Writes the mappings back to the file, for TablebaseGenerator.
+     */
+    void force() {
+        for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+            layers[seeds].force();
+        }
+    }
+
+    /**
+     * @return The tablebase holds all positions with up to this many seeds in the ambos.
+     */
+    public int getMaxSeeds() {
+        return maxSeeds;
+    }
+}
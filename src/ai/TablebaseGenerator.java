@@ -0,0 +1,221 @@
+package ai;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds a Tablebase file by retrograde analysis: positions are solved backwards from the end of the game, so that
+ * every position is solved after all positions it can move to.
+ *
+ * Seeds never leave a house, so a move either puts seeds in a house - the own house when sowing past it or
+ * capturing - and leads to a layer with fewer seeds, or it only moves seeds forward on the own side. Layers are
+ * therefore solved from 0 seeds upwards. Within a layer, the weight of a position is the sum over all ambos of the
+ * seeds times the ambo number (1-6 on both sides). A move that stays on the own side sows seeds into higher ambos
+ * and raises the weight, so the positions of a layer are solved from the highest weight down, one weight at a time.
+ * All positions of one weight are independent and are solved in parallel on a ForkJoinPool.
+ *
+ * Usage: TablebaseGenerator file seeds [threads]
+ */
+public class TablebaseGenerator {
+    /* Number of pits a player sows into: six ambos on each side and the own house */
+    private static final int CYCLE = 13;
+    private static final int HOUSE = 6;
+
+    /* Weight of each of the twelve ambos, and the smallest and largest weight from each ambo to the last */
+    private static final int[] WEIGHT = { 1, 2, 3, 4, 5, 6, 1, 2, 3, 4, 5, 6 };
+    private static final int[] MIN_WEIGHT = new int[12];
+    private static final int[] MAX_WEIGHT = new int[12];
+    static {
+        for (int k = 11; k >= 0; k--) {
+            MIN_WEIGHT[k] = k == 11 ? WEIGHT[k] : Math.min(WEIGHT[k], MIN_WEIGHT[k + 1]);
+            MAX_WEIGHT[k] = k == 11 ? WEIGHT[k] : Math.max(WEIGHT[k], MAX_WEIGHT[k + 1]);
+        }
+    }
+
+    private final Tablebase tablebase;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a generator.
+     * @param tablebase An empty tablebase, mapped for writing.
+     * @param threads Number of threads to solve with.
+     */
+    public TablebaseGenerator(Tablebase tablebase, int threads) {
+        this.tablebase = tablebase;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /**
+     * Solves all layers of the tablebase and writes them to the file, printing the progress.
+     */
+    public void generate() {
+        long start = System.nanoTime();
+        for (int seeds = 0; seeds <= tablebase.getMaxSeeds(); seeds++) {
+            long layerStart = System.nanoTime();
+            for (int weight = WEIGHT[11] * seeds; weight >= 0; weight--) {
+                pool.invoke(new LevelTask(seeds, weight));
+            }
+            long ms = Math.max(1, (System.nanoTime() - layerStart) / 1000000);
+            System.out.println("Layer " + seeds + ": " + Tablebase.getLayerSize(seeds) + " positions in " + ms + " ms ("
+                    + Tablebase.getLayerSize(seeds) * 1000 / ms + " positions/s)");
+        }
+        tablebase.force();
+        System.out.println("Tablebase of " + Tablebase.getSize(tablebase.getMaxSeeds()) + " positions in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Solves the positions of one weight in a layer. The task is split on the seeds in the first two ambos.
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int seeds;
+        private final int weight;
+
+        LevelTask(int seeds, int weight) {
+            this.seeds = seeds;
+            this.weight = weight;
+        }
+
+        @Override
+        protected void compute() {
+            List<PartTask> parts = new ArrayList<PartTask>();
+            for (int first = 0; first <= seeds; first++) {
+                for (int second = 0; first + second <= seeds; second++) {
+                    int rest = weight - first * WEIGHT[0] - second * WEIGHT[1];
+                    int restSeeds = seeds - first - second;
+                    if (rest >= restSeeds * MIN_WEIGHT[2] && rest <= restSeeds * MAX_WEIGHT[2]) {
+                        parts.add(new PartTask(seeds, weight, first, second));
+                    }
+                }
+            }
+            invokeAll(parts);
+        }
+    }
+
+    /**
+     * Solves the positions of one weight in a layer with given seeds in the first two ambos.
+     */
+    private class PartTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int seeds;
+        private final int weight;
+        private final int[] pits = new int[12];
+        private final int[] board = new int[CYCLE];
+        private final int[] next = new int[12];
+
+        PartTask(int seeds, int weight, int first, int second) {
+            this.seeds = seeds;
+            this.weight = weight;
+            pits[0] = first;
+            pits[1] = second;
+        }
+
+        @Override
+        protected void compute() {
+            int rest = seeds - pits[0] - pits[1];
+            enumerate(2, rest, weight - pits[0] * WEIGHT[0] - pits[1] * WEIGHT[1]);
+        }
+
+        /* Fills in the ambos from k on with the remaining seeds and weight, and solves each position found */
+        private void enumerate(int k, int restSeeds, int restWeight) {
+            if (restWeight < restSeeds * MIN_WEIGHT[k] || restWeight > restSeeds * MAX_WEIGHT[k]) {
+                return;
+            }
+            if (k == 11) {
+                pits[11] = restSeeds;
+                tablebase.set(seeds, Tablebase.getIndex(pits), solve());
+                return;
+            }
+            for (int n = 0; n <= restSeeds && n * WEIGHT[k] <= restWeight; n++) {
+                pits[k] = n;
+                enumerate(k + 1, restSeeds - n, restWeight - n * WEIGHT[k]);
+            }
+        }
+
+        /* Returns the seeds the player to move wins in the rest of the game less those the opponent wins */
+        private int solve() {
+            int own = 0;
+            int opponent = 0;
+            for (int k = 0; k < 6; k++) {
+                own += pits[k];
+                opponent += pits[k + 6];
+            }
+
+            /* The game has ended: the player with seeds left gathers them */
+            if (own == 0 || opponent == 0) {
+                return own - opponent;
+            }
+
+            int best = Integer.MIN_VALUE;
+            for (int ambo = 0; ambo < 6; ambo++) {
+                if (pits[ambo] > 0) {
+                    best = Math.max(best, move(ambo));
+                }
+            }
+            return best;
+        }
+
+        /*
+         * Makes a move on a board counted from the player to move: own ambos 0-5, own house 6 and the opponent's
+         * ambos 7-12 (the opponent's house is skipped). Returns the value of the move for the player to move.
+         */
+        private int move(int ambo) {
+            System.arraycopy(pits, 0, board, 0, 6);
+            board[HOUSE] = 0;
+            System.arraycopy(pits, 6, board, 7, 6);
+
+            int seedsLeft = board[ambo];
+            int pos = ambo;
+            board[ambo] = 0;
+            while (seedsLeft > 0) {
+                pos = (pos + 1) % CYCLE;
+                board[pos]++;
+                seedsLeft--;
+            }
+
+            /* Capture: last seed in an own empty ambo, with seeds in the opposite ambo */
+            int opposite = 12 - pos;
+            if (pos < HOUSE && board[pos] == 1 && board[opposite] > 0) {
+                board[HOUSE] += board[pos] + board[opposite];
+                board[pos] = 0;
+                board[opposite] = 0;
+            }
+
+            /* After an extra turn the same player moves again, otherwise the opponent's ambos come first */
+            boolean extraTurn = pos == HOUSE;
+            for (int k = 0; k < 6; k++) {
+                next[k] = board[extraTurn ? k : k + 7];
+                next[k + 6] = board[extraTurn ? k + 7 : k];
+            }
+
+            int value = tablebase.get(seeds - board[HOUSE], Tablebase.getIndex(next));
+            return board[HOUSE] + (extraTurn ? value : -value);
+        }
+    }
+
+    /**
+     * Generates a tablebase file.
+     * @param args File name, largest number of seeds in the ambos (0-28), and optionally the number of threads
+     * (default all cores).
+     * @throws IOException If the file can not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseGenerator file seeds [threads]");
+            return;
+        }
+        File file = new File(args[0]);
+        int maxSeeds = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Tablebase.create(file, maxSeeds);
+        System.out.println("Generating " + Tablebase.getSize(maxSeeds) + " positions (" + maxSeeds + " seeds) on " + threads + " thread(s)");
+        new TablebaseGenerator(new Tablebase(file, true), threads).generate();
+    }
+}
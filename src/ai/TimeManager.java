@@ -0,0 +1,236 @@
+package ai;
+import kalaha.*;
+
+/**
+ * Time control for one search. The search reads the clock (System.nanoTime) only every POLL_INTERVAL nodes, which keeps
+ * the cost of time keeping out of the node rate.
+ *
+ * There are two limits. The soft limit is checked between iterations: once it has passed, no new iteration is started.
+ * The hard limit is checked while searching: once it has passed, the search is aborted at once.
+ *
+ * A node limit can also be set (setNodeLimit). It is checked like the hard limit, against the nodes of each search
+ * thread, so that benchmarks can run searches of a fixed size.
+ *
+ * An adaptive time control also moves the soft limit for each move (see allocate and iterationCompleted): it moves
+ * at once when there is a single legal move or the result is proven, spends less time when few seeds and moves are
+ * left, stops early when the best move has been stable, and extends the time when the best move changes late.
+ */
+public class TimeManager {
+    /* Number of nodes between two clock readings - a power of two so that the check is a mask */
+    public static final int POLL_INTERVAL = 1024;
+    private static final long POLL_MASK = POLL_INTERVAL - 1;
+
+    /* The search may stop early once the best move has held for this many further iterations (five depths in all) */
+    private static final int STABLE_ITERATIONS = 4;
+
+    /* Share of the soft limit that must have passed before stopping early on a stable best move */
+    private static final double MIN_STABLE_SHARE = 0.25;
+
+    /* Score drop (in heuristic points) that counts as the score dropping */
+    private static final int SCORE_DROP_MARGIN = 2;
+
+    /* Factor the soft limit is extended by when the best move changes in the second half of the soft limit */
+    private static final double FLIP_EXTENSION = 1.5;
+
+    /* Limits in ms. The soft limit is moved per move by the adaptive time control */
+    private final long baseSoftLimit;
+    private long softLimit;
+    private final long hardLimit;
+    private final boolean adaptive;
+
+    /* Best move and score history of the current move */
+    private int lastMove;
+    private int lastScore;
+    private int stableIterations;
+
+    /* Most nodes a search thread may search */
+    private long nodeLimit = Long.MAX_VALUE;
+
+    /* System.nanoTime() when the search started */
+    private long startTime;
+
+    /* Set by stop() - both limits count as passed from then on */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a fixed time control. Long.MAX_VALUE means no limit.
+     * @param softLimit Time in ms after which no new iteration is started.
+     * @param hardLimit Time in ms after which the search is aborted.
+     */
+    public TimeManager(long softLimit, long hardLimit) {
+        this(softLimit, hardLimit, false);
+    }
+
+    /**
+     * Creates a time control. Long.MAX_VALUE means no limit.
+     * @param softLimit Time in ms after which no new iteration is started, before any adaptation.
+     * @param hardLimit Time in ms after which the search is aborted.
+     * @param adaptive True if the soft limit should be adapted to each position and search.
+     */
+    public TimeManager(long softLimit, long hardLimit, boolean adaptive) {
+        this.baseSoftLimit = Math.min(softLimit, hardLimit);
+        this.softLimit = baseSoftLimit;
+        this.hardLimit = hardLimit;
+        this.adaptive = adaptive;
+        start();
+    }
+
+    /**
+     * Creates a time control with the limits from the system properties (see Global).
+     * @return A new time control.
+     */
+    public static TimeManager fromSettings() {
+        return new TimeManager(Global.SOFT_TIME_LIMIT, Global.HARD_TIME_LIMIT, Global.ADAPTIVE_TIME);
+    }
+
+    /**
+     * Creates a time control for the rest of a move, with the same settings less time already spent on the move.
+     * @param used Time in ms already spent on the move, for example by the proof-number solver.
+     * @return A new time control.
+     */
+    public TimeManager remaining(long used) {
+        TimeManager rest = new TimeManager(Math.max(0, baseSoftLimit - used), Math.max(0, hardLimit - used), adaptive);
+        rest.nodeLimit = nodeLimit;
+        return rest;
+    }
+
+    /**
+     * Limits the number of nodes each search thread may search. The search is aborted once it has passed.
+     * @param nodeLimit Most nodes per thread, Long.MAX_VALUE for no limit.
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Sets the soft limit for a new move. With a single legal move the limit is 0, so the search returns at once.
+     * Otherwise the base soft limit is scaled down by the game phase, using the seeds left in the ambos and the number
+     * of legal moves as signals: positions with few seeds or few moves are resolved by shallower searches.
+     * Does nothing for a fixed time control.
+     * @param board The position to move in.
+     */
+    public void allocate(GameState board) {
+        lastMove = -1;
+        stableIterations = 0;
+        softLimit = baseSoftLimit;
+
+        if (!adaptive) {
+            return;
+        }
+
+        int validMoves = board.getNoValidMoves(board.getNextPlayer());
+        if (validMoves <= 1) {
+            softLimit = 0;
+            return;
+        }
+
+        int seedsLeft = 0;
+        for (int ambo = 1; ambo <= 6; ambo++) {
+            seedsLeft += board.getSeeds(ambo, 1) + board.getSeeds(ambo, 2);
+        }
+
+        /* Full time down to half as the seeds run out (below 36 seeds), and down to 60% of that with few moves */
+        double phase = 0.5 + 0.5 * Math.min(1.0, seedsLeft / 36.0);
+        double mobility = 0.6 + 0.4 * validMoves / 6.0;
+        softLimit = (long)(baseSoftLimit * phase * mobility);
+    }
+
+    /**
+     * Called by the main searcher after each completed iteration.
+     * @param bestMove Best move of the iteration.
+     * @param score Score of the iteration from the point of view of the player to move.
+     * @param proven True if the iteration searched the whole game tree, so that the result can not change.
+     * @return True if the search should stop now.
+     */
+    public boolean iterationCompleted(int bestMove, int score, boolean proven) {
+        if (!adaptive) {
+            return false;
+        }
+        if (proven) {
+            return true;
+        }
+
+        long elapsed = getElapsed();
+        if (bestMove == lastMove && score >= lastScore - SCORE_DROP_MARGIN) {
+            stableIterations++;
+        }
+        else {
+            /* The best move changed late - give the search more time to resolve it */
+            if (lastMove != -1 && bestMove != lastMove && elapsed >= softLimit / 2) {
+                softLimit = Math.min(hardLimit, (long)(softLimit * FLIP_EXTENSION));
+            }
+            stableIterations = 0;
+        }
+        lastMove = bestMove;
+        lastScore = score;
+
+        return stableIterations >= STABLE_ITERATIONS && elapsed >= softLimit * MIN_STABLE_SHARE;
+    }
+
+    /**
+     * Starts the clock. Called by the search when it starts.
+     */
+    public void start() {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops the search from another thread, as if both limits had passed. Used to end pondering.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Node-count polling: reads the clock only on every POLL_INTERVAL:th node.
+     * @param nodes Number of nodes searched so far.
+     * @return True if the node limit has passed, or the clock was read and the hard limit has passed.
+     */
+    public boolean poll(long nodes) {
+        return nodes >= nodeLimit || ((nodes & POLL_MASK) == 0 && isHardLimitReached());
+    }
+
+    /**
+     * @param nodes Number of nodes searched so far.
+     * @return True if the node limit has passed.
+     */
+    public boolean isNodeLimitReached(long nodes) {
+        return nodes >= nodeLimit;
+    }
+
+    /**
+     * @return True if the search must be aborted.
+     */
+    public boolean isHardLimitReached() {
+        return stopped || getElapsed() >= hardLimit;
+    }
+
+    /**
+     * @return True if no new iteration should be started.
+     */
+    public boolean isSoftLimitReached() {
+        return stopped || getElapsed() >= softLimit;
+    }
+
+    /**
+     * @return Time in ms since the search started.
+     */
+    public long getElapsed() {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    public long getSoftLimit() {
+        return softLimit;
+    }
+
+    /**
+     * @return The soft limit before it was adapted to the current move.
+     */
+    public long getBaseSoftLimit() {
+        return baseSoftLimit;
+    }
+
+    public long getHardLimit() {
+        return hardLimit;
+    }
+}
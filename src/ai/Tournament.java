@@ -0,0 +1,291 @@
+package ai;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import kalaha.*;
+
+/**
+ * Headless self-play between two search engines, played directly on GameState without the server, sockets or GUI.
+ * Games are played in pairs from the same opening - a few random moves - with the colours swapped, so that neither
+ * engine gains from the side it plays or from a lucky opening. Several games run at once, one per thread, and each
+ * thread keeps its own pair of single-threaded engines between games.
+ *
+ * Each move gets a soft time limit and a hard limit twice as long. With a time per game, each engine also has a
+ * clock for the game: a move then gets at most the time left divided by MOVES_TO_GO, the hard limit never passes the
+ * time left, and an engine whose clock runs out loses the game on time.
+ *
+ * The result is given as wins, draws and losses for the first engine, its Elo difference to the second engine with
+ * a 95% confidence interval, and the number of games per second. A game in which an engine throws is counted as
+ * failed rather than scored; the report then gives the number of games played and failed, and main exits with
+ * status 1.
+ *
+ * Usage: Tournament engineA engineB [games] [ms per move] [parallel games] [nodes per move] [opening moves]
+ * [ms per game]
+ */
+public class Tournament {
+    /* Standard normal quantile of a two-sided 95% confidence interval */
+    private static final double Z_95 = 1.96;
+
+    /* Moves an engine is expected to have left in a game, when its clock is shared out over the moves */
+    private static final int MOVES_TO_GO = 20;
+
+    private final String engineA;
+    private final String engineB;
+    private final int games;
+    private final long moveTime;
+    private final long moveNodes;
+    private final long gameTime;
+    private final int openingMoves;
+    private final int ttSizeBits;
+
+    /* Next game to be played, the results so far for engine A and the games that failed with an exception */
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicInteger wins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicInteger losses = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger timeLosses = new AtomicInteger();
+
+    /**
+     * Creates a tournament.
+     * @param engineA Name of the first engine (see SearchEngines.create).
+     * @param engineB Name of the second engine.
+     * @param games Number of games, rounded up to a whole number of pairs.
+     * @param moveTime Soft time limit per move in ms, the hard limit is twice as long.
+     * @param moveNodes Node limit per move, or Long.MAX_VALUE for none.
+     * @param gameTime Time in ms on each engine's clock per game, or Long.MAX_VALUE for no clock.
+     * @param openingMoves Number of random moves played before the engines take over.
+     * @param ttSizeBits Size of each engine's transposition table as a power of two.
+     * @throws IllegalArgumentException For an unknown engine name.
+     */
+    public Tournament(String engineA, String engineB, int games, long moveTime, long moveNodes, long gameTime, int openingMoves,
+            int ttSizeBits) {
+        /* Fail here rather than in the game threads */
+        for (String name : new String[] { engineA, engineB }) {
+            if (!Arrays.asList(SearchEngines.NAMES).contains(name)) {
+                throw new IllegalArgumentException("Unknown search engine: " + name);
+            }
+        }
+
+        this.engineA = engineA;
+        this.engineB = engineB;
+        this.games = (games + 1) / 2 * 2;
+        this.moveTime = moveTime;
+        this.moveNodes = moveNodes;
+        this.gameTime = gameTime;
+        this.openingMoves = openingMoves;
+        this.ttSizeBits = ttSizeBits;
+    }
+
+    /**
+     * Plays all games and prints the progress and the result.
+     * @param threads Number of games played at once.
+     * @return True if every game was played to the end and scored.
+     */
+    public boolean run(int threads) {
+        Thread[] players = new Thread[Math.max(1, threads)];
+        long start = System.nanoTime();
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Thread(new Player(), "Tournament " + i);
+            players[i].start();
+        }
+        for (int i = 0; i < players.length; i++) {
+            try {
+                players[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        System.out.println(getReport((System.nanoTime() - start) / 1000000));
+        return getPlayed() == games;
+    }
+
+    /**
+     * Plays games from the shared counter until all have been played. A game that throws is counted as failed and
+     * the engines are created anew, since they may have been left in the middle of a search.
+     */
+    private final class Player implements Runnable {
+        private SearchEngine a;
+        private SearchEngine b;
+
+        public void run() {
+            int game;
+            while ((game = nextGame.getAndIncrement()) < games) {
+                /* Both games of a pair start from the same opening, with engine A as player 1 in the first */
+                GameState board = getOpening(game / 2);
+                int playerA = game % 2 == 0 ? 1 : 2;
+
+                /* Time in ns left on each player's clock, and the player whose clock ran out */
+                long clockTime = gameTime == Long.MAX_VALUE ? Long.MAX_VALUE : gameTime * 1000000;
+                long[] clock = { 0, clockTime, clockTime };
+                int lostOnTime = 0;
+                try {
+                    if (a == null) {
+                        a = SearchEngines.withSolver(SearchEngines.create(engineA, 1, ttSizeBits));
+                        b = SearchEngines.withSolver(SearchEngines.create(engineB, 1, ttSizeBits));
+                    }
+                    while (!board.gameEnded() && lostOnTime == 0) {
+                        int player = board.getNextPlayer();
+                        TimeManager timeManager = getTimeManager(clock[player] / 1000000);
+                        SearchEngine engine = player == playerA ? a : b;
+                        long start = System.nanoTime();
+                        board.makeMove(engine.getMove(board, timeManager));
+                        if (gameTime != Long.MAX_VALUE) {
+                            clock[player] -= System.nanoTime() - start;
+                            if (clock[player] < 0) {
+                                lostOnTime = player;
+                            }
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                    a = null;
+                    b = null;
+                    System.out.println("Game " + game + " failed at " + board + ":");
+                    e.printStackTrace(System.out);
+                    continue;
+                }
+
+                int winner;
+                if (lostOnTime != 0) {
+                    winner = 3 - lostOnTime;
+                    timeLosses.incrementAndGet();
+                }
+                else {
+                    winner = board.getWinner();
+                }
+                int played;
+                if (winner == playerA) {
+                    played = wins.incrementAndGet() + draws.get() + losses.get();
+                }
+                else if (winner == 0) {
+                    played = draws.incrementAndGet() + wins.get() + losses.get();
+                }
+                else {
+                    played = losses.incrementAndGet() + wins.get() + draws.get();
+                }
+                if (played % 100 == 0) {
+                    System.out.println("Game " + played + ": +" + wins.get() + " =" + draws.get() + " -" + losses.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param clockLeft Time in ms left on the clock of the player to move, if there is a clock.
+     * @return The time control of a move: the time per move, cut down to the player's share of the time left on
+     * its clock.
+     */
+    private TimeManager getTimeManager(long clockLeft) {
+        long soft = moveTime;
+        long hard = 2 * moveTime;
+        if (gameTime != Long.MAX_VALUE) {
+            soft = Math.min(soft, clockLeft / MOVES_TO_GO);
+            hard = Math.min(hard, clockLeft);
+        }
+        TimeManager timeManager = new TimeManager(soft, hard);
+        timeManager.setNodeLimit(moveNodes);
+        return timeManager;
+    }
+
+    /**
+     * @param pair Number of the pair of games.
+     * @return The start position after openingMoves random moves, the same for every run. The moves stop early if
+     * the game ends.
+     */
+    private GameState getOpening(int pair) {
+        Random random = new Random(pair);
+        GameState board = new GameState();
+        for (int i = 0; i < openingMoves && !board.gameEnded(); i++) {
+            int moves = MoveGenerator.generate(board);
+            board.makeMove(MoveGenerator.get(moves, random.nextInt(MoveGenerator.size(moves))));
+        }
+        return board;
+    }
+
+    /**
+     * Converts a score to an Elo difference.
+     * @param score Points per game, a draw counting half.
+     * @return The Elo difference that gives this expected score, infinite for a score of 0 or 1.
+     */
+    public static double getElo(double score) {
+        /* Adding 0.0 turns -0 into 0 */
+        return -400 * Math.log10(1 / score - 1) + 0.0;
+    }
+
+    /**
+     * @return Number of games played to the end and scored.
+     */
+    public int getPlayed() {
+        return wins.get() + draws.get() + losses.get();
+    }
+
+    /**
+     * @return Number of games that failed with an exception.
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @param elapsed Time in ms the games took.
+     * @return The result for engine A: wins, draws, losses, score, Elo difference with a 95% confidence interval
+     * and games per second, followed by a warning if fewer games were played than requested.
+     */
+    public String getReport(long elapsed) {
+        int w = wins.get();
+        int d = draws.get();
+        int l = losses.get();
+        int n = Math.max(1, w + d + l);
+
+        /* Confidence interval of the score from the spread of the game results, converted to Elo */
+        double score = (w + 0.5 * d) / n;
+        double variance = (w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score) / n;
+        double margin = Z_95 * Math.sqrt(variance / n);
+        double elo = getElo(score);
+        double low = getElo(Math.max(0, score - margin));
+        double high = getElo(Math.min(1, score + margin));
+
+        String report = engineA + " vs " + engineB + ": +" + w + " =" + d + " -" + l + ", score " + String.format("%.1f%%", 100 * score)
+                + ", Elo " + String.format("%+.0f [%+.0f, %+.0f]", elo, low, high) + ", "
+                + String.format("%.2f", n * 1000.0 / Math.max(1, elapsed)) + " games/s";
+        if (timeLosses.get() > 0) {
+            report += ", " + timeLosses.get() + " lost on time";
+        }
+        if (w + d + l != games) {
+            report += "\nINCOMPLETE: " + (w + d + l) + " of " + games + " games played, " + failures.get() + " failed";
+        }
+        return report;
+    }
+
+    /**
+     * Plays a tournament between two engines.
+     * @param args Names of the two engines (smp, ybw, turn or mcts), and optionally the number of games (default
+     * 1000), time per move in ms (default 100), number of games played at once (default all cores), node limit per
+     * move (default none, 0 = none), number of random opening moves (default 4) and time per game on each
+     * engine's clock in ms (default none, 0 = none - only the time per move applies).
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: Tournament engineA engineB [games] [ms per move] [parallel games] [nodes per move] [opening moves] [ms per game]");
+            System.out.println("Without a time per game, only the time per move applies.");
+            return;
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long moveTime = args.length > 3 ? Long.parseLong(args[3]) : 100;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long moveNodes = args.length > 5 && Long.parseLong(args[5]) > 0 ? Long.parseLong(args[5]) : Long.MAX_VALUE;
+        int openingMoves = args.length > 6 ? Integer.parseInt(args[6]) : 4;
+        long gameTime = args.length > 7 && Long.parseLong(args[7]) > 0 ? Long.parseLong(args[7]) : Long.MAX_VALUE;
+
+        /* Two engines per game played at once, so their tables are kept small */
+        Tournament tournament = new Tournament(args[0], args[1], games, moveTime, moveNodes, gameTime, openingMoves, Math.min(Global.TT_SIZE_BITS, 20));
+        System.out.println(tournament.games + " games of " + args[0] + " vs " + args[1] + " at " + moveTime + " ms"
+                + (moveNodes == Long.MAX_VALUE ? "" : " or " + moveNodes + " nodes") + " per move"
+                + (gameTime == Long.MAX_VALUE ? "" : " and " + gameTime + " ms per game") + ", " + threads + " at once");
+        if (!tournament.run(threads)) {
+            System.exit(1);
+        }
+    }
+}
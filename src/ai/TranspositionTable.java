@@ -0,0 +1,132 @@
+package ai;
+
+/**
+ * Fixed-size transposition table for the MiniMax search, indexed by the Zobrist key of a game state.
+ * Each entry stores the searched depth, the bound type of the score, the score itself and the best move found.
+ * An entry is marked proven when its subtree was searched to ended or decided games without reaching the horizon,
+ * so that its score holds whatever the depth.
+ * Entries are packed into a single long so that a probe does not allocate anything.
+ *
+ * The table can be shared by several search threads without locking. The key is stored XOR:ed with the entry,
+ * so an entry whose two halves were written by different threads no longer matches its key and is treated as a miss.
+ * Probe and hit statistics are kept by each Searcher rather than here, to keep the shared table write-light.
+ */
+public class TranspositionTable {
+    /* Bound types */
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    /* Layout of the packed entry: score (32 bits), depth (8 bits), bound (2 bits), move (3 bits), valid flag (1 bit),
+     * proven flag (1 bit) */
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final long VALID = 1L << 45;
+    private static final long PROVEN = 1L << 46;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * Creates a new transposition table.
+     * @param sizeBits The table holds 2^sizeBits entries (16 bytes each).
+     */
+    public TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        entries = new long[1 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+    }
+
+    /**
+     * Looks up a game state in the table.
+     * @param key Zobrist key of the game state.
+     * @return The packed entry, or 0 if the game state is not in the table.
+     */
+    public long probe(long key) {
+        int index = (int)key & mask;
+        long entry = entries[index];
+
+        if (entry != 0 && (keys[index] ^ entry) == key) {
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result. An existing entry for another game state is always replaced,
+     * an entry for the same game state only if the new result is at least as deep.
+     * @param key Zobrist key of the game state.
+     * @param depth Remaining depth that was searched below the game state.
+     * @param bound EXACT, LOWER or UPPER.
+     * @param score Score of the game state.
+     * @param move Best move (1-6), or 0 if unknown.
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        store(key, depth, bound, score, move, false);
+    }
+
+    /**
+     * Stores a search result. An existing entry for another game state is always replaced, an entry for the same
+     * game state only if the new result is at least as deep or proven while the old one is not.
+     * @param key Zobrist key of the game state.
+     * @param depth Remaining depth that was searched below the game state.
+     * @param bound EXACT, LOWER or UPPER.
+     * @param score Score of the game state.
+     * @param move Best move (1-6), or 0 if unknown.
+     * @param proven True if the search below the game state reached no horizon, so the bound holds at any depth.
+     */
+    public void store(long key, int depth, int bound, int score, int move, boolean proven) {
+        int index = (int)key & mask;
+        long old = entries[index];
+
+        if (old != 0 && (keys[index] ^ old) == key && getDepth(old) > depth && (isProven(old) || !proven)) {
+            return;
+        }
+
+        long entry = (score & 0xFFFFFFFFL) | ((long)Math.min(depth, 255) << DEPTH_SHIFT) | ((long)bound << BOUND_SHIFT) | ((long)move << MOVE_SHIFT) | VALID;
+        if (proven) {
+            entry |= PROVEN;
+        }
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            entries[i] = 0;
+        }
+    }
+
+    public static int getScore(long entry) {
+        return (int)entry;
+    }
+
+    public static int getDepth(long entry) {
+        return (int)(entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int getBound(long entry) {
+        return (int)(entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    public static int getMove(long entry) {
+        return (int)(entry >>> MOVE_SHIFT) & 0x7;
+    }
+
+    public static boolean isProven(long entry) {
+        return (entry & PROVEN) != 0;
+    }
+
+    /**
+     * @return Number of entries the table can hold.
+     */
+    public int getSize() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,402 @@
+package ai;
+import java.util.Arrays;
+import kalaha.*;
+
+/**
+ * MiniMax search with alfa-beta pruning over complete turns (macro moves) instead of single sowings. Every node
+ * expands the turns from TurnGenerator, so an extra-turn chain is one move and the depth counts real turns: the
+ * player to move changes at every ply, and positions inside a chain are never searched on their own. Children are
+ * ordered by the heuristic value of the state after the turn, after the best turn stored in the transposition table.
+ *
+ * Running this class measures the effective branching factor per sowing ply (Searcher) and per turn (this search).
+ */
+public class TurnSearch implements SearchEngine {
+    /* Deepest ply in turns */
+    private static final int MAX_PLY = 64;
+
+    private final TranspositionTable transpositionTable;
+    private final TurnGenerator generator = new TurnGenerator();
+
+    /* One turn list, one child state and one array of ordering scores per ply, so that the search does not allocate */
+    private final TurnGenerator.TurnList[] turnLists = new TurnGenerator.TurnList[MAX_PLY];
+    private final PackedState[] states = new PackedState[MAX_PLY];
+    private final int[][] orderScores = new int[MAX_PLY][];
+
+    private TimeManager timeManager;
+    private boolean aborted;
+
+    /* Deepest iteration to search, in turns */
+    private int maxDepth = MAX_PLY - 1;
+
+    /* Results and statistics of the last search */
+    private int completedDepth;
+    private long nodes;
+    private long turns;
+    private long sowings;
+    private long searchTime;
+    private int bestMove;
+    private long evaluations;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long ttProbes;
+    private long ttHits;
+    private long ttStores;
+
+    /* Nodes and time in microseconds of each completed iteration, indexed by depth */
+    private final long[] iterationNodes = new long[MAX_PLY];
+    private final long[] iterationTimes = new long[MAX_PLY];
+
+    /**
+     * Creates a new turn search.
+     * @param ttSizeBits The transposition table holds 2^ttSizeBits entries.
+     */
+    public TurnSearch(int ttSizeBits) {
+        transpositionTable = new TranspositionTable(ttSizeBits);
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            turnLists[ply] = new TurnGenerator.TurnList();
+            states[ply] = new PackedState(0, 0);
+            orderScores[ply] = new int[16];
+        }
+    }
+
+    /**
+     * Limits the iterative deepening to a fixed depth.
+     * @param maxDepth Deepest iteration to search, in turns.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+    }
+
+    /**
+     * Searches for the best turn with iterative deepening and returns its first sowing. Only completed iterations
+     * are used.
+     * @param currentBoard The current board state.
+     * @param timeManager Time control of the search. It is started here.
+     * @return The best move to make (1-6).
+     */
+    public int getMove(GameState currentBoard, TimeManager timeManager) {
+        this.timeManager = timeManager;
+        timeManager.start();
+        timeManager.allocate(currentBoard);
+        aborted = false;
+        completedDepth = 0;
+        nodes = 0;
+        turns = 0;
+        sowings = 0;
+        evaluations = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        ttStores = 0;
+
+        PackedState root = new PackedState(currentBoard);
+        int player = currentBoard.getNextPlayer();
+        TurnGenerator.TurnList rootTurns = turnLists[0];
+        generator.generate(root, rootTurns);
+        orderTurns(rootTurns, 0, player, 0);
+        turns += rootTurns.size();
+
+        long bestTurn = 0;
+        int curDepth = 0;
+        while (curDepth < maxDepth && !timeManager.isSoftLimitReached()) {
+            curDepth++;
+            long iterationStart = System.nanoTime();
+            long startNodes = nodes;
+
+            int alpha = -Searcher.INFINITY;
+            int bestIndex = -1;
+            for (int i = 0; i < rootTurns.size(); i++) {
+                PackedState child = states[0];
+                child.set(rootTurns.getLow(i), rootTurns.getHigh(i));
+                int score = searchTurn(child, player, curDepth - 1, 1, alpha, Searcher.INFINITY);
+                if (aborted) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestIndex = i;
+                }
+            }
+            if (aborted) {
+                break;
+            }
+
+            /* The best turn is searched first in the next iteration */
+            rootTurns.swap(0, bestIndex);
+            bestTurn = rootTurns.getMoves(0);
+            completedDepth = curDepth;
+            iterationNodes[curDepth] = nodes - startNodes;
+            iterationTimes[curDepth] = (System.nanoTime() - iterationStart) / 1000;
+            if (timeManager.iterationCompleted(TurnGenerator.getAmbo(bestTurn, 0), alpha, false)) {
+                break;
+            }
+        }
+
+        searchTime = timeManager.getElapsed();
+
+        /* Not even depth 1 finished - play the first turn */
+        if (bestTurn == 0) {
+            bestTurn = rootTurns.getMoves(0);
+        }
+        bestMove = TurnGenerator.getAmbo(bestTurn, 0);
+        return bestMove;
+    }
+
+    /**
+     * Negamax alfa-beta search of a position at the start of a turn.
+     * @param state The position. Changed by the search.
+     * @param player The player whose turn it is. Also used for ended games, where the next player is not meaningful.
+     * Otherwise it is the player to move in the state, even after a turn that was cut (see searchTurn).
+     * @param depth Remaining depth in turns.
+     * @param ply Distance from the root in turns.
+     * @param alpha The score the player is already sure of.
+     * @param beta The score the opponent is already sure of.
+     * @return The score for the player (fail-soft), or 0 if the search was aborted.
+     */
+    private int search(PackedState state, int player, int depth, int ply, int alpha, int beta) {
+        nodes++;
+        if (aborted || timeManager.poll(nodes)) {
+            aborted = true;
+            return 0;
+        }
+        if (state.gameEnded() || depth == 0 || ply >= MAX_PLY) {
+            evaluations++;
+            return evaluate(state, player);
+        }
+
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int ttIndex = -1;
+        long key = state.getHash();
+        long entry = transpositionTable.probe(key);
+        ttProbes++;
+        if (entry != 0) {
+            ttHits++;
+            ttIndex = TranspositionTable.getMove(entry) - 1;
+            if (TranspositionTable.getDepth(entry) >= depth) {
+                int ttScore = TranspositionTable.getScore(entry);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT) {
+                    return ttScore;
+                }
+                if (bound == TranspositionTable.LOWER) {
+                    alpha = Integer.max(alpha, ttScore);
+                }
+                if (bound == TranspositionTable.UPPER) {
+                    beta = Integer.min(beta, ttScore);
+                }
+                if (beta <= alpha) {
+                    return ttScore;
+                }
+            }
+        }
+
+        TurnGenerator.TurnList list = turnLists[ply];
+        generator.generate(state, list);
+        orderTurns(list, ply, player, ttIndex);
+        turns += list.size();
+
+        int bestScore = -Searcher.INFINITY;
+        int bestIndex = 0;
+        PackedState child = states[ply];
+        for (int i = 0; i < list.size(); i++) {
+            child.set(list.getLow(i), list.getHigh(i));
+            int score = searchTurn(child, player, depth - 1, ply + 1, alpha, beta);
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestIndex = i;
+            }
+            alpha = Integer.max(alpha, score);
+            if (alpha >= beta) {
+                cutoffs++;
+                if (i == 0) {
+                    firstMoveCutoffs++;
+                }
+                break;
+            }
+        }
+
+        /* The stored turn number refers to the sorted order, before the stored turn was moved to the front. Only the
+         * first seven turns fit in the stored move. */
+        if (ttIndex > 0 && bestIndex == 0) {
+            bestIndex = ttIndex;
+        } else if (ttIndex > 0 && bestIndex == ttIndex) {
+            bestIndex = 0;
+        }
+
+        int bound;
+        if (bestScore <= alphaOrig) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestScore >= betaOrig) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        transpositionTable.store(key, depth, bound, bestScore, bestIndex < 7 ? bestIndex + 1 : 0);
+        ttStores++;
+        return bestScore;
+    }
+
+    /**
+     * Searches the position after a turn. A turn normally passes the move to the opponent, so the score is negated,
+     * but a turn cut after TurnGenerator.MAX_LENGTH sowings leaves the same player to move, and is searched on from
+     * that player's point of view.
+     * @param child The position after the turn. Changed by the search.
+     * @param player The player who made the turn.
+     * @param depth Remaining depth below the turn.
+     * @param ply Distance of the child from the root in turns.
+     * @param alpha Lower bound of the window, from the point of view of the player who made the turn.
+     * @param beta Upper bound of the window, from the point of view of the player who made the turn.
+     * @return The score of the turn from the point of view of the player who made it.
+     */
+    private int searchTurn(PackedState child, int player, int depth, int ply, int alpha, int beta) {
+        if (!child.gameEnded() && child.getNextPlayer() == player) {
+            return search(child, player, depth, ply, alpha, beta);
+        }
+        return -search(child, 3 - player, depth, ply, -beta, -alpha);
+    }
+
+    /**
+     * Sorts a turn list, best first, by the heuristic value of the state after each turn. The order only depends on
+     * the list, so a stored turn number stays valid between visits.
+     * @param ttIndex Number of the stored best turn in sorted order, moved to the front, or -1.
+     */
+    private void orderTurns(TurnGenerator.TurnList list, int ply, int player, int ttIndex) {
+        int n = list.size();
+        if (orderScores[ply].length < n) {
+            orderScores[ply] = new int[n * 2];
+        }
+        int[] scores = orderScores[ply];
+        PackedState child = states[ply];
+        for (int i = 0; i < n; i++) {
+            child.set(list.getLow(i), list.getHigh(i));
+            scores[i] = evaluate(child, player);
+            sowings += TurnGenerator.getLength(list.getMoves(i));
+        }
+
+        /* Insertion sort - the lists are short */
+        for (int i = 1; i < n; i++) {
+            for (int j = i; j > 0 && scores[j] > scores[j - 1]; j--) {
+                int t = scores[j];
+                scores[j] = scores[j - 1];
+                scores[j - 1] = t;
+                list.swap(j, j - 1);
+            }
+        }
+
+        if (ttIndex > 0 && ttIndex < n) {
+            list.swap(0, ttIndex);
+        }
+    }
+
+    /**
+     * Same heuristic as Searcher.heuristicCalc, on a packed state and from the point of view of a player.
+     */
+    private static int evaluate(PackedState state, int player) {
+        int score = 0;
+        for (int ambo = 1; ambo <= 6; ambo++) {
+            score += state.getSeeds(ambo, 1) - state.getSeeds(ambo, 2);
+        }
+        score += 2 * (state.getScore(1) - state.getScore(2));
+        return player == 1 ? score : -score;
+    }
+
+    /**
+     * @return The deepest iteration that finished before the time was up, in turns.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return Nodes searched during the last search. Every node is the start of a turn.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return Average number of sowings in the turns generated during the last search.
+     */
+    public double getSowingsPerTurn() {
+        return (double)sowings / Math.max(1, turns);
+    }
+
+    /**
+     * @return Share of turn generations answered from the turn cache (0-1), since the search was created.
+     */
+    public double getTurnCacheHitRate() {
+        return (double)generator.getHits() / Math.max(1, generator.getLookups());
+    }
+
+    /**
+     * @return Statistics of the last search, with the depth and iterations in turns. Evaluations are the positions
+     * scored at the horizon or at the end of the game, not those scored to order the turns.
+     */
+    public SearchStats getStats() {
+        return new SearchStats("turn", bestMove, searchTime, nodes, evaluations, completedDepth, cutoffs, firstMoveCutoffs,
+                ttProbes, ttHits, ttStores, Arrays.copyOfRange(iterationNodes, 1, completedDepth + 1),
+                Arrays.copyOfRange(iterationTimes, 1, completedDepth + 1));
+    }
+
+    /**
+     * @return One line summary of the last search.
+     */
+    public String getReport() {
+        return "Depth " + completedDepth + " turns, " + nodes + " nodes, " + nodes * 1000 / Math.max(1, searchTime) + " nodes/s, "
+                + String.format("%.2f", getSowingsPerTurn()) + " sowings per turn, turn cache hit rate " + (int)(getTurnCacheHitRate() * 100) + "%";
+    }
+
+    /**
+     * Measures the effective branching factor, nodes^(1/depth), of Searcher per sowing ply and of this search per
+     * turn, over the SearchSuite positions searched to fixed depths. Both searches count one node per searched
+     * position, without the quiescence search.
+     * @param args Optional: depth in plies (default 12), depth in turns (default 8).
+     */
+    public static void main(String[] args) {
+        int plyDepth = 12;
+        int turnDepth = 8;
+        if (args.length > 0) {
+            plyDepth = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            turnDepth = Integer.parseInt(args[1]);
+        }
+
+        String[] positions = SearchSuite.POSITIONS;
+        double plyEbf = 0;
+        double turnEbf = 0;
+        double sowingsPerTurn = 0;
+        double cacheHitRate = 0;
+
+        System.out.println("position\tply nodes\tEBF/ply\tturn nodes\tEBF/turn\tsowings/turn");
+        for (int i = 0; i < positions.length; i++) {
+            Searcher searcher = new Searcher(new TranspositionTable(Global.TT_SIZE_BITS), 0);
+            searcher.setMaxDepth(plyDepth);
+            searcher.setQuiescence(false);
+            searcher.init(new GameState(positions[i]), new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE));
+            searcher.iterate();
+            double ebf = Math.pow(searcher.getNodes(), 1.0 / plyDepth);
+
+            TurnSearch search = new TurnSearch(Global.TT_SIZE_BITS);
+            search.setMaxDepth(turnDepth);
+            search.getMove(new GameState(positions[i]), new TimeManager(Long.MAX_VALUE, Long.MAX_VALUE));
+            double turnsEbf = Math.pow(search.getNodes(), 1.0 / turnDepth);
+
+            System.out.println(positions[i] + "\t" + searcher.getNodes() + "\t" + String.format("%.2f", ebf) + "\t" + search.getNodes()
+                    + "\t" + String.format("%.2f", turnsEbf) + "\t" + String.format("%.2f", search.getSowingsPerTurn()));
+            plyEbf += ebf / positions.length;
+            turnEbf += turnsEbf / positions.length;
+            sowingsPerTurn += search.getSowingsPerTurn() / positions.length;
+            cacheHitRate += search.getTurnCacheHitRate() / positions.length;
+        }
+        System.out.println("Average EBF per ply (depth " + plyDepth + "): " + String.format("%.2f", plyEbf) + ", per turn (depth " + turnDepth + "): "
+                + String.format("%.2f", turnEbf) + ", " + String.format("%.2f", sowingsPerTurn) + " sowings per turn, turn cache hit rate "
+                + (int)(cacheHitRate * 100) + "%");
+    }
+}
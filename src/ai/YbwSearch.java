@@ -0,0 +1,481 @@
+package ai;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import kalaha.*;
+
+/**
+ * Parallel MiniMax search with alfa-beta pruning using the Young Brothers Wait concept on a work-stealing ForkJoinPool.
+ * At every node the first legal child (the eldest brother) is searched serially. Only when it has not caused a cutoff
+ * are the remaining siblings forked as tasks, all with the window that the eldest brother left behind. When a sibling
+ * causes a cutoff, the node is marked as aborted and its other tasks are cancelled; tasks that are already running
+ * see the mark through their parent chain and return at their next node.
+ *
+ * Nodes less than MIN_SPLIT_DEPTH from the horizon are searched serially in place, since forking costs more than
+ * the subtree is worth there.
+ */
+public class YbwSearch implements SearchEngine {
+    /* Remaining depth below which no tasks are forked */
+    private static final int MIN_SPLIT_DEPTH = 4;
+
+    /* Bound on the iterations, which index the per-iteration statistics */
+    private static final int MAX_DEPTH = 127;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable transpositionTable;
+
+    private TimeManager timeManager;
+
+    /* Set once the hard time limit has passed */
+    private volatile boolean timeUp;
+
+    /* Results and statistics of the last search */
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong splits = new AtomicLong();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong cutoffs = new AtomicLong();
+    private final AtomicLong firstMoveCutoffs = new AtomicLong();
+    private final AtomicLong ttProbes = new AtomicLong();
+    private final AtomicLong ttHits = new AtomicLong();
+    private final AtomicLong ttStores = new AtomicLong();
+
+    /* Nodes and time in microseconds of each completed iteration, indexed by depth */
+    private final long[] iterationNodes = new long[MAX_DEPTH + 1];
+    private final long[] iterationTimes = new long[MAX_DEPTH + 1];
+    private int bestMove;
+    private int completedDepth;
+    private long searchTime;
+
+    /**
+     * Creates a new parallel search.
+     * @param threads Number of worker threads in the pool.
+     * @param ttSizeBits The shared transposition table holds 2^ttSizeBits entries.
+     */
+    public YbwSearch(int threads, int ttSizeBits) {
+        pool = new ForkJoinPool(Math.max(1, threads));
+        transpositionTable = new TranspositionTable(ttSizeBits);
+    }
+
+    /**
+     * Searches for the best move with iterative deepening. Only completed iterations are used.
+     * @param currentBoard The current board state.
+     * @param timeManager Time control of the search. It is started here.
+     * @return The best move to make (1-6).
+     */
+    public int getMove(GameState currentBoard, TimeManager timeManager) {
+        this.timeManager = timeManager;
+        timeManager.start();
+        timeManager.allocate(currentBoard);
+        timeUp = false;
+        nodes.set(0);
+        splits.set(0);
+        evaluations.set(0);
+        cutoffs.set(0);
+        firstMoveCutoffs.set(0);
+        ttProbes.set(0);
+        ttHits.set(0);
+        ttStores.set(0);
+        completedDepth = 0;
+
+        int bestMove = -1;
+        int curDepth = 0;
+
+        while (curDepth < MAX_DEPTH && !timeUp && !timeManager.isSoftLimitReached()) {
+            curDepth++;
+            long iterationStart = System.nanoTime();
+            long startNodes = nodes.get();
+
+            NodeTask root = new NodeTask(null, currentBoard.clone(), curDepth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            pool.invoke(root);
+
+            /* An iteration that ran out of time is not trusted */
+            if (!timeUp && root.bestMove > 0) {
+                bestMove = root.bestMove;
+                completedDepth = curDepth;
+                iterationNodes[curDepth] = nodes.get() - startNodes;
+                iterationTimes[curDepth] = (System.nanoTime() - iterationStart) / 1000;
+
+                int score = root.getRawResult();
+                if (timeManager.iterationCompleted(bestMove, currentBoard.getNextPlayer() == 1 ? score : -score, false)) {
+                    break;
+                }
+            }
+        }
+
+        /* Not even depth 1 finished - play the first legal move */
+        for (int ambo = 1; ambo <= 6 && bestMove == -1; ambo++) {
+            if (currentBoard.moveIsPossible(ambo)) {
+                bestMove = ambo;
+            }
+        }
+
+        searchTime = timeManager.getElapsed();
+        this.bestMove = bestMove;
+        return bestMove;
+    }
+
+    /**
+     * @return True once the hard time limit has passed. The clock itself is read at split nodes and every
+     * TimeManager.POLL_INTERVAL serial nodes of a task.
+     */
+    private boolean isTimeUp() {
+        return timeUp;
+    }
+
+    /**
+     * One node of the game tree searched as a task. The task owns its board.
+     */
+    private class NodeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final NodeTask parent;
+        private final GameState board;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+
+        /* Set when a sibling caused a cutoff at this node - every task below it gives up */
+        private volatile boolean aborted;
+
+        /* Set once the serial search of this task has seen an abort from above or the time running out (see
+         * pollAborted). Never cleared, so everything the task searches after that is thrown away. */
+        private boolean abortSeen;
+
+        /* Best move found at this node */
+        private int bestMove;
+
+        /* Nodes searched serially by this task, and its other statistics, added to the shared counts when it ends */
+        private long taskNodes;
+        private long taskEvaluations;
+        private long taskCutoffs;
+        private long taskFirstMoveCutoffs;
+        private long taskProbes;
+        private long taskHits;
+        private long taskStores;
+
+        NodeTask(NodeTask parent, GameState board, int depth, int alpha, int beta) {
+            this.parent = parent;
+            this.board = board;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Integer compute() {
+            int score = search();
+            nodes.addAndGet(taskNodes);
+            evaluations.addAndGet(taskEvaluations);
+            cutoffs.addAndGet(taskCutoffs);
+            firstMoveCutoffs.addAndGet(taskFirstMoveCutoffs);
+            ttProbes.addAndGet(taskProbes);
+            ttHits.addAndGet(taskHits);
+            ttStores.addAndGet(taskStores);
+            return score;
+        }
+
+        /**
+         * @return True if this node or any node above it has been aborted, or the time is up.
+         */
+        private boolean isAborted() {
+            for (NodeTask t = this; t != null; t = t.parent) {
+                if (t.aborted) {
+                    return true;
+                }
+            }
+            return isTimeUp();
+        }
+
+        /**
+         * Abort check of the serial search. Reading the clock and walking the parent chain costs O(task depth), so it
+         * is only done every TimeManager.POLL_INTERVAL nodes of the task, and the result is cached in abortSeen.
+         * @return True if the task has to give up.
+         */
+        private boolean pollAborted() {
+            if (!abortSeen && (taskNodes & (TimeManager.POLL_INTERVAL - 1)) == 0) {
+                if (timeManager.isNodeLimitReached(nodes.get() + taskNodes) || timeManager.isHardLimitReached()) {
+                    timeUp = true;
+                }
+                abortSeen = isAborted();
+            }
+            return abortSeen;
+        }
+
+        /**
+         * Searches this node, splitting after the eldest brother.
+         * @return The score of the node, meaningless if the node was aborted.
+         */
+        private int search() {
+            int a = alpha;
+            int b = beta;
+
+            /* The root always goes through here so that its best move is known */
+            if ((depth < MIN_SPLIT_DEPTH && parent != null) || board.isTerminal()) {
+                return miniMax(depth, a, b);
+            }
+            if (timeManager.isHardLimitReached()) {
+                timeUp = true;
+            }
+            if (isAborted()) {
+                return 0;
+            }
+
+            boolean isMaxPlayer = board.getNextPlayer() == 1;
+            int bestScore = isMaxPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+            /* Probe the transposition table before expanding any children */
+            int ttMove = 0;
+            long entry = transpositionTable.probe(board.getHash());
+            taskProbes++;
+            if (entry != 0) {
+                taskHits++;
+                ttMove = TranspositionTable.getMove(entry);
+                if (TranspositionTable.getDepth(entry) >= depth) {
+                    int ttScore = TranspositionTable.getScore(entry);
+                    int bound = TranspositionTable.getBound(entry);
+                    if (bound == TranspositionTable.EXACT) {
+                        bestMove = ttMove;
+                        return ttScore;
+                    }
+                    if (bound == TranspositionTable.LOWER) {
+                        a = Integer.max(a, ttScore);
+                    }
+                    if (bound == TranspositionTable.UPPER) {
+                        b = Integer.min(b, ttScore);
+                    }
+                    if (b <= a) {
+                        bestMove = ttMove;
+                        return ttScore;
+                    }
+                }
+            }
+
+            /* Legal moves, the stored best move first and the rest in MoveGenerator order */
+            int[] moves = new int[6];
+            int moveCount = 0;
+            if (ttMove > 0 && board.moveIsPossible(ttMove)) {
+                moves[moveCount++] = ttMove;
+            }
+            for (int list = MoveGenerator.generate(board); list != 0; list >>>= 3) {
+                int ambo = list & 7;
+                if (ambo != ttMove) {
+                    moves[moveCount++] = ambo;
+                }
+            }
+
+            /* The eldest brother is searched serially by this task */
+            GameState child = board.clone();
+            child.makeMove(moves[0]);
+            taskNodes++;
+            NodeTask eldest = new NodeTask(this, child, depth - 1, a, b);
+            bestScore = eldest.compute();
+            bestMove = moves[0];
+            if (isAborted()) {
+                return bestScore;
+            }
+            if (isMaxPlayer) {
+                a = Integer.max(a, bestScore);
+            } else {
+                b = Integer.min(b, bestScore);
+            }
+            if (a >= b) {
+                taskCutoffs++;
+                taskFirstMoveCutoffs++;
+            }
+
+            /* ...then the younger brothers are forked with the narrowed window */
+            if (a < b && moveCount > 1) {
+                NodeTask[] tasks = new NodeTask[moveCount];
+                for (int i = 1; i < moveCount; i++) {
+                    child = board.clone();
+                    child.makeMove(moves[i]);
+                    taskNodes++;
+                    tasks[i] = new NodeTask(this, child, depth - 1, a, b);
+                    tasks[i].fork();
+                }
+                splits.incrementAndGet();
+
+                for (int i = 1; i < moveCount; i++) {
+                    int score = tasks[i].join();
+                    if (isMaxPlayer ? score > bestScore : score < bestScore) {
+                        bestScore = score;
+                        bestMove = moves[i];
+                    }
+                    if (isMaxPlayer) {
+                        a = Integer.max(a, score);
+                    } else {
+                        b = Integer.min(b, score);
+                    }
+
+                    /* Cutoff - abort and cancel the remaining siblings */
+                    if (b <= a) {
+                        taskCutoffs++;
+                        aborted = true;
+                        for (int j = i + 1; j < moveCount; j++) {
+                            tasks[j].cancel(false);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            /* A cutoff here still gives a valid bound - only an abort from above makes the score useless */
+            if (!isTimeUp() && (parent == null || !parent.isAborted())) {
+                store(board, depth, alpha, beta, bestScore, bestMove);
+                taskStores++;
+            }
+            return bestScore;
+        }
+
+        /**
+         * Serial alfa-beta search in place, used close to the horizon. An abort is noticed within
+         * TimeManager.POLL_INTERVAL nodes (see pollAborted).
+         */
+        private int miniMax(int depth, int alpha, int beta) {
+            if (depth == 0 || board.isTerminal() || pollAborted()) {
+                taskEvaluations++;
+                return Searcher.heuristicCalc(board);
+            }
+
+            boolean isMaxPlayer = board.getNextPlayer() == 1;
+            int bestScore = isMaxPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int bestMove = 0;
+            int alphaOrig = alpha;
+            int betaOrig = beta;
+            int movesSearched = 0;
+
+            int ttMove = 0;
+            long entry = transpositionTable.probe(board.getHash());
+            taskProbes++;
+            if (entry != 0) {
+                taskHits++;
+                ttMove = TranspositionTable.getMove(entry);
+                if (TranspositionTable.getDepth(entry) >= depth) {
+                    int ttScore = TranspositionTable.getScore(entry);
+                    int bound = TranspositionTable.getBound(entry);
+                    if (bound == TranspositionTable.EXACT) {
+                        return ttScore;
+                    }
+                    if (bound == TranspositionTable.LOWER) {
+                        alpha = Integer.max(alpha, ttScore);
+                    }
+                    if (bound == TranspositionTable.UPPER) {
+                        beta = Integer.min(beta, ttScore);
+                    }
+                    if (beta <= alpha) {
+                        return ttScore;
+                    }
+                }
+            }
+
+            /* The stored best move first, then the rest in MoveGenerator order */
+            int list = MoveGenerator.generate(board);
+            for (int i = -1; i < 6; i++) {
+                int ambo;
+                if (i == -1) {
+                    ambo = ttMove;
+                } else {
+                    ambo = MoveGenerator.get(list, i);
+                    if (ambo == ttMove) {
+                        continue;
+                    }
+                }
+                if (ambo == 0 || !board.doMove(ambo)) {
+                    continue;
+                }
+                taskNodes++;
+                int score = miniMax(depth - 1, alpha, beta);
+                board.undoMove();
+                movesSearched++;
+
+                if (isMaxPlayer) {
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestMove = ambo;
+                    }
+                    alpha = Integer.max(score, alpha);
+                } else {
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestMove = ambo;
+                    }
+                    beta = Integer.min(score, beta);
+                }
+                if (beta <= alpha) {
+                    taskCutoffs++;
+                    if (movesSearched == 1) {
+                        taskFirstMoveCutoffs++;
+                    }
+                    break;
+                }
+            }
+
+            if (!abortSeen) {
+                store(board, depth, alphaOrig, betaOrig, bestScore, bestMove);
+                taskStores++;
+            }
+            return bestScore;
+        }
+    }
+
+    /**
+     * Stores a search result with the bound type given by the original window.
+     */
+    private void store(GameState board, int depth, int alphaOrig, int betaOrig, int bestScore, int bestMove) {
+        int bound;
+        if (bestScore <= alphaOrig) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestScore >= betaOrig) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        transpositionTable.store(board.getHash(), depth, bound, bestScore, bestMove);
+    }
+
+    /**
+     * @return The deepest iteration that finished before the time was up.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return Nodes searched by all workers during the last search.
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * @return Nodes per second over all workers during the last search.
+     */
+    public long getNodesPerSecond() {
+        return getNodes() * 1000 / Math.max(1, searchTime);
+    }
+
+    /**
+     * @return Number of nodes where the younger brothers were forked during the last search.
+     */
+    public long getSplits() {
+        return splits.get();
+    }
+
+    /**
+     * @return Statistics of the last search. The counts include the iteration that ran out of time.
+     */
+    public SearchStats getStats() {
+        return new SearchStats("ybw", bestMove, searchTime, nodes.get(), evaluations.get(), completedDepth, cutoffs.get(),
+                firstMoveCutoffs.get(), ttProbes.get(), ttHits.get(), ttStores.get(), Arrays.copyOfRange(iterationNodes, 1, completedDepth + 1),
+                Arrays.copyOfRange(iterationTimes, 1, completedDepth + 1));
+    }
+
+    /**
+     * @return One line summary of the last search.
+     */
+    public String getReport() {
+        return "Depth " + completedDepth + " on " + pool.getParallelism() + " worker(s), " + getNodes() + " nodes, "
+                + getNodesPerSecond() + " nodes/s, " + getSplits() + " splits, " + pool.getStealCount() + " steals in total";
+    }
+}
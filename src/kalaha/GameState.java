@@ -1,5 +1,7 @@
 package kalaha;
 
+import java.util.Arrays;
+
 /**
  * Represents a game state in the Kalaha board game.
  * 
@@ -48,6 +50,33 @@ public class GameState
     //Next player to make a move
     private int nextPlayer = 1;
     
+    //Zobrist key for board and next player
+    private long hash;
+    
+    //Seeds in the ambos of each player, kept up to date by setPit
+    private int seedsS;
+    private int seedsN;
+    
+    //Undo records for doMove/undoMove: board, next player and ambo
+    //totals per record, and the Zobrist key. Allocated on first use.
+    private int[] undoBoards;
+    private long[] undoHashes;
+    private int undoTop;
+    
+    /**
+     * Number of undo records allocated up front. The stack grows if
+     * a search goes deeper than this.
+     */
+    private static final int UNDO_CAPACITY = 128;
+    
+    //Ints per undo record (14 pits + next player + ambo totals)
+    private static final int UNDO_SIZE = 17;
+    
+    //1 for the ambos of each player by board index, so that setPit
+    //can update the totals without branching
+    private static final int[] AMBO_S = {0, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] AMBO_N = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1};
+    
     /**
      * Creates a start game state for a new Kalaha
      * game.
@@ -67,6 +96,27 @@ public class GameState
     {
         this.board = board;
         this.nextPlayer = nextPlayer;
+        hash = Zobrist.hash(board, nextPlayer);
+        countSeeds();
+    }
+    
+    /**
+     * Creates a game state with an already known Zobrist key and
+     * ambo totals.
+     * 
+     * @param board Board representation
+     * @param nextPlayer Next player to make a move
+     * @param hash Zobrist key for the board
+     * @param seedsS Seeds in player 1's ambos
+     * @param seedsN Seeds in player 2's ambos
+     */
+    private GameState(int[] board, int nextPlayer, long hash, int seedsS, int seedsN)
+    {
+        this.board = board;
+        this.nextPlayer = nextPlayer;
+        this.hash = hash;
+        this.seedsS = seedsS;
+        this.seedsN = seedsN;
     }
     
     /**
@@ -109,6 +159,8 @@ public class GameState
             ex.printStackTrace();
             createBoard(6);
         }
+        hash = Zobrist.hash(board, nextPlayer);
+        countSeeds();
     }
     
     /**
@@ -125,7 +177,7 @@ public class GameState
             n_board[i] = board[i];
         }
         //... and return a new object
-        return new GameState(n_board, nextPlayer);
+        return new GameState(n_board, nextPlayer, hash, seedsS, seedsN);
     }
     
     /**
@@ -149,6 +201,41 @@ public class GameState
         {
             board[i] = seeds;
         }
+        hash = Zobrist.hash(board, nextPlayer);
+        countSeeds();
+    }
+    
+    /**
+     * Counts the seeds in each player's ambos.
+     */
+    private void countSeeds()
+    {
+        seedsS = 0;
+        for (int i = START_S; i <= END_S; i++)
+        {
+            seedsS += board[i];
+        }
+        seedsN = 0;
+        for (int i = START_N; i <= END_N; i++)
+        {
+            seedsN += board[i];
+        }
+    }
+    
+    /**
+     * Sets the number of seeds in a pit and updates the Zobrist key
+     * and the ambo totals.
+     * 
+     * @param i Board index (0-13)
+     * @param seeds New number of seeds
+     */
+    private void setPit(int i, int seeds)
+    {
+        hash ^= Zobrist.pit(i, board[i]) ^ Zobrist.pit(i, seeds);
+        int delta = seeds - board[i];
+        seedsS += AMBO_S[i] * delta;
+        seedsN += AMBO_N[i] * delta;
+        board[i] = seeds;
     }
     
     /**
@@ -181,7 +268,7 @@ public class GameState
         
         //Pickup seeds
         int seeds = board[cMoveI];
-        board[cMoveI] = 0;
+        setPit(cMoveI, 0);
         boolean lastIsHouse = false;
         
         //Sow seeds
@@ -198,7 +285,7 @@ public class GameState
             else
             {
                 //Sow a seed
-                board[cMoveI]++;
+                setPit(cMoveI, board[cMoveI] + 1);
                 seeds--;
             }
             
@@ -231,14 +318,14 @@ public class GameState
                     {
                         if (nextPlayer == 1)
                         {
-                            board[HOUSE_S] += board[cMoveI] + board[oi];
+                            setPit(HOUSE_S, board[HOUSE_S] + board[cMoveI] + board[oi]);
                         }
                         else if (nextPlayer == 2)
                         {
-                            board[HOUSE_N] += board[cMoveI] + board[oi];
+                            setPit(HOUSE_N, board[HOUSE_N] + board[cMoveI] + board[oi]);
                         }
-                        board[cMoveI] = 0;
-                        board[oi] = 0;
+                        setPit(cMoveI, 0);
+                        setPit(oi, 0);
                     }
                 }
             }
@@ -256,6 +343,59 @@ public class GameState
         return true;
     }
     
+    /**
+     * Makes a move in place and records what is needed to take it
+     * back with undoMove(). The undo records are kept on a preallocated
+     * stack, so a search using doMove/undoMove does not allocate.
+     * 
+     * @param ambo The move to make (1-6)
+     * @return True if the move was successful, false if not. Nothing
+     * is recorded for an unsuccessful move.
+     */
+    public boolean doMove(int ambo)
+    {
+        if (!moveIsPossible(ambo))
+        {
+            return false;
+        }
+        
+        if (undoBoards == null)
+        {
+            undoBoards = new int[UNDO_CAPACITY * UNDO_SIZE];
+            undoHashes = new long[UNDO_CAPACITY];
+        }
+        else if (undoTop == undoHashes.length)
+        {
+            undoBoards = Arrays.copyOf(undoBoards, undoBoards.length * 2);
+            undoHashes = Arrays.copyOf(undoHashes, undoHashes.length * 2);
+        }
+        
+        //Save board, next player, ambo totals and key
+        int base = undoTop * UNDO_SIZE;
+        System.arraycopy(board, 0, undoBoards, base, 14);
+        undoBoards[base + 14] = nextPlayer;
+        undoBoards[base + 15] = seedsS;
+        undoBoards[base + 16] = seedsN;
+        undoHashes[undoTop] = hash;
+        undoTop++;
+        
+        return makeMove(ambo);
+    }
+    
+    /**
+     * Takes back the last move made with doMove().
+     */
+    public void undoMove()
+    {
+        undoTop--;
+        int base = undoTop * UNDO_SIZE;
+        System.arraycopy(undoBoards, base, board, 0, 14);
+        nextPlayer = undoBoards[base + 14];
+        seedsS = undoBoards[base + 15];
+        seedsN = undoBoards[base + 16];
+        hash = undoHashes[undoTop];
+    }
+    
     /**
      * Returns the opposite ambo index for a specified ambo.
      * 
@@ -297,6 +437,18 @@ public class GameState
     {
         if (nextPlayer == 1) nextPlayer = 2;
         else nextPlayer = 1;
+        hash ^= Zobrist.player(2);
+    }
+    
+    /**
+     * Returns the Zobrist key for this game state. The key is
+     * updated incrementally as moves are made.
+     * 
+     * @return 64-bit key for board and next player
+     */
+    public long getHash()
+    {
+        return hash;
     }
     
     /**
@@ -332,14 +484,8 @@ public class GameState
      */
     public boolean gameEnded()
     {
-        int seeds = 0;
-        
         //Player 1 - South
-        for (int i = START_S; i <= END_S; i++)
-        {
-            seeds += board[i];
-        }
-        if (seeds == 0)
+        if (seedsS == 0)
         {
             //Gather opponents seeds (if any)
             //Rule 6
@@ -347,20 +493,15 @@ public class GameState
             {
                 if (board[i] > 0)
                 {
-                    board[HOUSE_N] += board[i];
-                    board[i] = 0;
+                    setPit(HOUSE_N, board[HOUSE_N] + board[i]);
+                    setPit(i, 0);
                 }
             }
             return true;
         }
         
         //Player 2 - North
-        seeds = 0;
-        for (int i = START_N; i <= END_N; i++)
-        {
-            seeds += board[i];
-        }
-        if (seeds == 0)
+        if (seedsN == 0)
         {
             //Gather opponents seeds (if any)
             //Rule 6
@@ -368,8 +509,8 @@ public class GameState
             {
                 if (board[i] > 0)
                 {
-                    board[HOUSE_S] += board[i];
-                    board[i] = 0;
+                    setPit(HOUSE_S, board[HOUSE_S] + board[i]);
+                    setPit(i, 0);
                 }
             }
             return true;
@@ -378,6 +519,42 @@ public class GameState
         return false;
     }
     
+    /**
+     * Checks if the Kalaha game has ended, without gathering the
+     * remaining seeds into the house as gameEnded() does. Reads the
+     * ambo totals, so it takes constant time.
+     * 
+     * @return True if one of the players has 0 seeds in all own ambos.
+     */
+    public boolean isTerminal()
+    {
+        return seedsS == 0 || seedsN == 0;
+    }
+    
+    /**
+     * Returns the number of seeds in all ambos of a player. The total
+     * is kept up to date as seeds are sown and captured.
+     * 
+     * @param player The player (1-2)
+     * @return Number of seeds in the player's ambos
+     */
+    public int getAmboSeeds(int player)
+    {
+        return player == 1 ? seedsS : seedsN;
+    }
+    
+    /**
+     * Returns the number of seeds in a player's house. Unlike
+     * getScore() it does not check whether the game has ended.
+     * 
+     * @param player The player (1-2)
+     * @return Number of seeds in the player's house
+     */
+    public int getHouseSeeds(int player)
+    {
+        return player == 1 ? board[HOUSE_S] : board[HOUSE_N];
+    }
+    
     /**
      * Returns the winner for this Kalaha game.
      * 
@@ -0,0 +1,164 @@
+package kalaha;
+
+/**
+ * Staged move generation for the player to move. Moves that give an
+ * extra turn come first, then moves that capture, then the rest. Both
+ * kinds are detected with arithmetic on the seed counts, without
+ * cloning the game state or making the move.
+ *
+ * The generated move list is packed into an int, three bits per move
+ * in the order they should be tried, and ends with a 0. It can be
+ * walked without allocating anything:
+ *
+ * for (int moves = MoveGenerator.generate(board); moves != 0; moves >>>= 3)
+ * {
+ *     int ambo = moves & 7;
+ * }
+ */
+public final class MoveGenerator
+{
+    /**
+     * Number of pits a player sows into: six ambos on each side and
+     * the own house.
+     */
+    public static final int CYCLE = 13;
+
+    /**
+     * Bit set of all six ambos (bit 1-6 for ambo 1-6).
+     */
+    public static final int ALL_MOVES = 0x7E;
+
+    /**
+     * Shifts of the three bit sets packed by classify.
+     */
+    public static final int LEGAL_SHIFT = 0;
+    public static final int EXTRA_TURN_SHIFT = 8;
+    public static final int CAPTURE_SHIFT = 16;
+
+    private MoveGenerator()
+    {
+    }
+
+    /**
+     * Generates the legal moves for the player to move in staged order:
+     * extra-turn moves, captures, then the rest, each group in ambo order.
+     *
+     * @param board The game state
+     * @return Packed move list, 0 if there are no legal moves
+     */
+    public static int generate(GameState board)
+    {
+        int classes = classify(board);
+        int legal = (classes >>> LEGAL_SHIFT) & ALL_MOVES;
+        int extraTurns = (classes >>> EXTRA_TURN_SHIFT) & ALL_MOVES;
+        int captures = (classes >>> CAPTURE_SHIFT) & ALL_MOVES & ~extraTurns;
+
+        int moves = 0;
+        int shift = 0;
+        for (int stage = 0; stage < 3; stage++)
+        {
+            int stageMoves;
+            if (stage == 0) stageMoves = extraTurns;
+            else if (stage == 1) stageMoves = captures;
+            else stageMoves = legal & ~extraTurns & ~captures;
+
+            for (int ambo = 1; ambo <= 6; ambo++)
+            {
+                if ((stageMoves & (1 << ambo)) != 0)
+                {
+                    moves |= ambo << shift;
+                    shift += 3;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * @param moves Packed move list
+     * @return Number of moves in the list
+     */
+    public static int size(int moves)
+    {
+        int n = 0;
+        for (; moves != 0; moves >>>= 3)
+        {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @param moves Packed move list
+     * @param index Position in the list (0-5)
+     * @return The move at the position
+     */
+    public static int get(int moves, int index)
+    {
+        return (moves >>> (3 * index)) & 7;
+    }
+
+    /**
+     * Classifies the moves of the player to move in one pass over the
+     * ambos. Returns three bit sets (bit 1-6 for ambo 1-6), shifted by
+     * LEGAL_SHIFT, EXTRA_TURN_SHIFT and CAPTURE_SHIFT:
+     *
+     * Legal moves.
+     *
+     * Extra-turn moves, whose last seed lands in the own house. Counting
+     * from an ambo, the house is 7 - ambo pits away, and a sowing lap is
+     * CYCLE pits since the opponent's house is skipped.
+     *
+     * Captures, whose last seed lands in an own empty ambo with seeds in
+     * the opposite ambo. A capture is only possible with at most CYCLE
+     * seeds, since otherwise the landing ambo is sown twice. Without
+     * passing the own house, the landing ambo must be empty and the
+     * opposite ambo must already hold seeds. After a full lap back to
+     * the own side, the opposite ambo has just been sown, and the landing
+     * ambo is either empty or the emptied start ambo.
+     *
+     * @param board The game state
+     * @return The packed bit sets, never 0 if there is a legal move
+     */
+    public static int classify(GameState board)
+    {
+        int player = board.getNextPlayer();
+        int opponent = 3 - player;
+        int classes = 0;
+        for (int ambo = 1; ambo <= 6; ambo++)
+        {
+            int seeds = board.getSeeds(ambo, player);
+            if (seeds == 0)
+            {
+                continue;
+            }
+            classes |= 1 << (LEGAL_SHIFT + ambo);
+
+            if (seeds % CYCLE == 7 - ambo)
+            {
+                classes |= 1 << (EXTRA_TURN_SHIFT + ambo);
+            }
+            else if (seeds <= CYCLE)
+            {
+                //Landing position counted from the first own ambo: 0-5 own ambos, 6 house, 7-12 opponent's ambos
+                int landing = ambo - 1 + seeds;
+                if (landing < 6)
+                {
+                    if (board.getSeeds(landing + 1, player) == 0 && board.getSeeds(6 - landing, opponent) > 0)
+                    {
+                        classes |= 1 << (CAPTURE_SHIFT + ambo);
+                    }
+                }
+                else if (landing >= CYCLE)
+                {
+                    landing -= CYCLE;
+                    if (landing == ambo - 1 || board.getSeeds(landing + 1, player) == 0)
+                    {
+                        classes |= 1 << (CAPTURE_SHIFT + ambo);
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+}
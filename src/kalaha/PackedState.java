@@ -0,0 +1,467 @@
+package kalaha;
+
+/**
+ * Compact game state for the Kalaha board game. The 14 pits are
+ * packed into two longs with 7 bits per pit, and the next player is
+ * kept in a spare bit. Sowing is done with precomputed tables instead
+ * of walking the seeds one at a time, but follows exactly the same
+ * rules as GameState.
+ * <p>
+ * Layout: the low long holds board indices 0-6 (north's house and
+ * south's ambos), the high long holds board indices 7-13 (south's
+ * house and north's ambos). Pit i is stored at bit 7 * (i % 7). Bit 63
+ * of the low long is set when player 2 is next to move.
+ */
+public final class PackedState
+{
+    //Bits per pit. 72 seeds fit in 7 bits, so additions never carry
+    //into the next pit.
+    private static final int BITS = 7;
+    private static final long PIT_MASK = (1L << BITS) - 1;
+
+    //All six ambos of one side (fields 1-6 of a long)
+    private static final long AMBOS_MASK = ((1L << (6 * BITS)) - 1) << BITS;
+
+    //Next player bit in the low long
+    private static final long PLAYER_2 = 1L << 63;
+
+    //No capture target
+    private static final int NONE = 15;
+
+    //Precomputed tables, indexed by (player, ambo, seeds). The
+    //increments hold one seed for every pit passed, including the
+    //full laps around the board.
+    private static final long[] INC_LO = new long[2 * 6 * (Zobrist.MAX_SEEDS + 1)];
+    private static final long[] INC_HI = new long[2 * 6 * (Zobrist.MAX_SEEDS + 1)];
+
+    //Landing pit (bits 0-3), extra turn flag (bit 4) and capture
+    //target (bits 5-8, NONE if the last seed does not land in an own ambo)
+    private static final int[] MOVE_INFO = new int[2 * 6 * (Zobrist.MAX_SEEDS + 1)];
+
+    static
+    {
+        for (int player = 1; player <= 2; player++)
+        {
+            for (int ambo = 0; ambo < 6; ambo++)
+            {
+                for (int seeds = 1; seeds <= Zobrist.MAX_SEEDS; seeds++)
+                {
+                    buildEntry(player, ambo, seeds);
+                }
+            }
+        }
+    }
+
+    private long lo;
+    private long hi;
+
+    /**
+     * Creates a start game state for a new Kalaha game.
+     */
+    public PackedState()
+    {
+        this(new GameState());
+    }
+
+    /**
+     * Creates a packed copy of a game state.
+     *
+     * @param state The game state
+     */
+    public PackedState(GameState state)
+    {
+        this(state.toString());
+    }
+
+    /**
+     * Creates a game state from a string board representation
+     * received from the game server.
+     *
+     * @param boardStr Board string representation
+     */
+    public PackedState(String boardStr)
+    {
+        String[] tokens = boardStr.split(";");
+        for (int i = 0; i < 14; i++)
+        {
+            set(i, Integer.parseInt(tokens[i]));
+        }
+        if (Integer.parseInt(tokens[GameState.NEXT_PLAYER]) == 2)
+        {
+            lo |= PLAYER_2;
+        }
+    }
+
+    /**
+     * Creates a game state from its packed representation.
+     *
+     * @param lo Board indices 0-6 and next player
+     * @param hi Board indices 7-13
+     */
+    public PackedState(long lo, long hi)
+    {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * Simulates one sowing on an empty board and stores the result
+     * in the tables.
+     */
+    private static void buildEntry(int player, int ambo, int seeds)
+    {
+        int[] board = new int[14];
+        int i = (player == 1 ? GameState.START_S : GameState.START_N) + ambo;
+        int left = seeds;
+
+        while (left > 0)
+        {
+            i++;
+            if (i >= 14) i = 0;
+
+            //Don't sow in opponents house
+            if ( (player == 1 && i == GameState.HOUSE_N) || (player == 2 && i == GameState.HOUSE_S) ) continue;
+
+            board[i]++;
+            left--;
+        }
+
+        int idx = index(player, ambo, seeds);
+        for (int p = 0; p < 14; p++)
+        {
+            if (p < 7) INC_LO[idx] += (long)board[p] << (BITS * p);
+            else INC_HI[idx] += (long)board[p] << (BITS * (p - 7));
+        }
+
+        boolean extra = (player == 1 && i == GameState.HOUSE_S) || (player == 2 && i == GameState.HOUSE_N);
+        boolean own = (player == 1 && i >= GameState.START_S && i <= GameState.END_S) || (player == 2 && i >= GameState.START_N && i <= GameState.END_N);
+        int target = own ? 14 - i : NONE;
+
+        MOVE_INFO[idx] = i | (extra ? 1 << 4 : 0) | (target << 5);
+    }
+
+    private static int index(int player, int ambo, int seeds)
+    {
+        return ((player - 1) * 6 + ambo) * (Zobrist.MAX_SEEDS + 1) + seeds;
+    }
+
+    /**
+     * Returns the number of seeds at a board index.
+     *
+     * @param i Board index (0-13)
+     * @return Number of seeds
+     */
+    private int get(int i)
+    {
+        if (i < 7) return (int)(lo >>> (BITS * i)) & (int)PIT_MASK;
+        return (int)(hi >>> (BITS * (i - 7))) & (int)PIT_MASK;
+    }
+
+    /**
+     * Sets the number of seeds at a board index.
+     *
+     * @param i Board index (0-13)
+     * @param seeds Number of seeds
+     */
+    private void set(int i, int seeds)
+    {
+        if (i < 7)
+        {
+            lo = (lo & ~(PIT_MASK << (BITS * i))) | ((long)seeds << (BITS * i));
+        }
+        else
+        {
+            hi = (hi & ~(PIT_MASK << (BITS * (i - 7)))) | ((long)seeds << (BITS * (i - 7)));
+        }
+    }
+
+    /**
+     * Creates a copy of this state.
+     *
+     * @return The copy
+     */
+    public PackedState clone()
+    {
+        return new PackedState(lo, hi);
+    }
+
+    /**
+     * Converts this state to a regular GameState.
+     *
+     * @return The game state
+     */
+    public GameState toGameState()
+    {
+        int[] board = new int[14];
+        for (int i = 0; i < 14; i++)
+        {
+            board[i] = get(i);
+        }
+        return new GameState(board, getNextPlayer());
+    }
+
+    /**
+     * Makes a move in the current Kalaha game state.
+     *
+     * @param ambo The move to make (1-6)
+     * @return True if the move was successful, false if not.
+     */
+    public boolean makeMove(int ambo)
+    {
+        //Internal ambo number of 0-5
+        ambo--;
+
+        int player = getNextPlayer();
+        int cMoveI = (player == 1 ? GameState.START_S : GameState.START_N) + ambo;
+        int seeds = get(cMoveI);
+
+        //Check if legal move
+        if (seeds == 0)
+        {
+            return false;
+        }
+
+        //Pickup and sow all seeds at once
+        set(cMoveI, 0);
+        int idx = index(player, ambo, seeds);
+        lo += INC_LO[idx];
+        hi += INC_HI[idx];
+
+        int info = MOVE_INFO[idx];
+        int last = info & 0xF;
+
+        //Check for extra move
+        if ((info & (1 << 4)) != 0)
+        {
+            gameEnded();
+            return true;
+        }
+
+        //Possible capture of opponent's seeds
+        int oi = info >>> 5;
+        if (oi != NONE && get(last) == 1)
+        {
+            int captured = get(oi);
+            if (captured > 0)
+            {
+                int house = player == 1 ? GameState.HOUSE_S : GameState.HOUSE_N;
+                set(house, get(house) + 1 + captured);
+                set(last, 0);
+                set(oi, 0);
+            }
+        }
+
+        lo ^= PLAYER_2;
+
+        //Call to update game state in
+        //case any player won.
+        gameEnded();
+
+        return true;
+    }
+
+    /**
+     * Returns the next player to make a move.
+     *
+     * @return Next player to make a move (1 or 2)
+     */
+    public int getNextPlayer()
+    {
+        return lo < 0 ? 2 : 1;
+    }
+
+    /**
+     * Returns the number of seeds for the specified
+     * ambo and player.
+     *
+     * @param ambo The ambo (1-6)
+     * @param player The player (1-2)
+     * @return Number of seeds, or -1 if an error occured
+     */
+    public int getSeeds(int ambo, int player)
+    {
+        if (ambo < 1 || ambo > 6) return -1;
+        if (player == 1) return get(GameState.START_S + ambo - 1);
+        if (player == 2) return get(GameState.START_N + ambo - 1);
+        return -1;
+    }
+
+    /**
+     * Checks if a move is possible.
+     *
+     * @param ambo The move to make (1-6)
+     * @return True if the move is possible (at least one seed in the ambo), false otherwise
+     */
+    public boolean moveIsPossible(int ambo)
+    {
+        return getSeeds(ambo, getNextPlayer()) > 0;
+    }
+
+    /**
+     * Returns the number of possible valid moves (non-empty
+     * ambos) for the specified player in this game state.
+     *
+     * @param player The player to check
+     * @return Number of possible moves for this player
+     */
+    public int getNoValidMoves(int player)
+    {
+        int cnt = 0;
+        for (int ambo = 1; ambo <= 6; ambo++)
+        {
+            if (getSeeds(ambo, player) > 0) cnt++;
+        }
+        return cnt;
+    }
+
+    /**
+     * Checks if the Kalaha game has ended. The game ends when one of the
+     * players has 0 seeds in all own ambos. The remaining seeds are then
+     * moved to the opponent's house, as in GameState.
+     *
+     * @return True if the game has ended, false if not.
+     */
+    public boolean gameEnded()
+    {
+        //Player 1 - South
+        if ((lo & AMBOS_MASK) == 0)
+        {
+            //Rule 6
+            set(GameState.HOUSE_N, get(GameState.HOUSE_N) + sumAmbos(hi));
+            hi &= ~AMBOS_MASK;
+            return true;
+        }
+
+        //Player 2 - North
+        if ((hi & AMBOS_MASK) == 0)
+        {
+            //Rule 6
+            set(GameState.HOUSE_S, get(GameState.HOUSE_S) + sumAmbos(lo));
+            lo &= ~AMBOS_MASK;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Sums the six ambo fields of a packed long.
+     */
+    private static int sumAmbos(long half)
+    {
+        int sum = 0;
+        for (int i = 1; i <= 6; i++)
+        {
+            sum += (int)(half >>> (BITS * i)) & (int)PIT_MASK;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the score (number of seeds in the house) for a player.
+     *
+     * @param player The player
+     * @return The score for the specified player
+     */
+    public int getScore(int player)
+    {
+        //In case we have a winner, this method
+        //needs to be called to update the game state.
+        gameEnded();
+
+        if (player == 1) return get(GameState.HOUSE_S);
+        return get(GameState.HOUSE_N);
+    }
+
+    /**
+     * Returns the winner for this Kalaha game.
+     *
+     * @return Winner (1 or 2), 0 if draw, and -1 if game is still running.
+     */
+    public int getWinner()
+    {
+        if (gameEnded())
+        {
+            int s1 = getScore(1);
+            int s2 = getScore(2);
+
+            if (s1 > s2) return 1;
+            if (s2 > s1) return 2;
+            return 0;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Board indices 0-6 and the next player bit
+     */
+    public long getLow()
+    {
+        return lo;
+    }
+
+    /**
+     * @return Board indices 7-13
+     */
+    public long getHigh()
+    {
+        return hi;
+    }
+
+    /**
+     * Restores a state previously read with getLow() and getHigh().
+     * Used by searches to take back moves without allocating.
+     *
+     * @param lo Board indices 0-6 and next player
+     * @param hi Board indices 7-13
+     */
+    public void set(long lo, long hi)
+    {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof PackedState)) return false;
+        PackedState p = (PackedState)o;
+        return lo == p.lo && hi == p.hi;
+    }
+
+    /**
+     * Returns a 64-bit hash of this state, mixed from the two packed
+     * longs. Not the same key as GameState.getHash().
+     *
+     * @return Hash of the board and next player
+     */
+    public long getHash()
+    {
+        long h = (lo ^ (hi * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return h ^ (h >>> 29);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        long h = getHash();
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns a board string representation for this game state,
+     * in the same format as GameState.
+     *
+     * @return Board string representation
+     */
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 14; i++)
+        {
+            str.append(get(i)).append(';');
+        }
+        str.append(getNextPlayer());
+        return str.toString();
+    }
+}
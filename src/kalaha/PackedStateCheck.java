@@ -0,0 +1,93 @@
+package kalaha;
+
+import java.util.Random;
+
+/**
+ * Randomized differential check of PackedState against GameState:
+ * plays random games through both representations side by side and
+ * compares them after every move, so that the table-driven sowing is
+ * known to follow exactly the same rules.
+ * <p>
+ * Usage: PackedStateCheck [games] [seed]. The exit status is 1 if the
+ * two differ anywhere.
+ */
+public final class PackedStateCheck
+{
+    private PackedStateCheck()
+    {
+    }
+
+    /**
+     * Plays random games with GameState and PackedState side by side
+     * and compares them after every move. Half of the games start from
+     * the start position, the other half from a random deal of all
+     * seeds over the ambos, so that large ambos and full laps are also
+     * sown. The random moves include empty ambos, which both have to
+     * refuse.
+     *
+     * @param games Number of games
+     * @param seed Seed of the random moves and deals
+     * @return The first position where the two differ, or null if they
+     * agree everywhere
+     */
+    public static String verify(int games, long seed)
+    {
+        Random random = new Random(seed);
+        for (int game = 0; game < games; game++)
+        {
+            GameState board = game % 2 == 0 ? new GameState() : randomDeal(random);
+            PackedState packed = new PackedState(board);
+            if (!packed.toString().equals(board.toString()))
+            {
+                return board + ": packed as " + packed;
+            }
+
+            while (!board.gameEnded())
+            {
+                String before = board.toString();
+                int ambo = 1 + random.nextInt(6);
+                boolean moved = board.makeMove(ambo);
+                boolean packedMoved = packed.makeMove(ambo);
+
+                if (moved != packedMoved || !packed.toString().equals(board.toString())
+                        || packed.gameEnded() != board.gameEnded() || packed.getWinner() != board.getWinner()
+                        || !packed.equals(new PackedState(board)) || !packed.toGameState().toString().equals(board.toString()))
+                {
+                    return before + " ambo " + ambo + ": GameState " + board + " (" + moved + "), PackedState " + packed + " (" + packedMoved + ")";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deals all seeds at random over the twelve ambos, with empty houses
+     * and a random player to move.
+     */
+    private static GameState randomDeal(Random random)
+    {
+        int[] board = new int[14];
+        for (int i = 0; i < Zobrist.MAX_SEEDS; i++)
+        {
+            int ambo = random.nextInt(12);
+            board[ambo < 6 ? GameState.START_S + ambo : GameState.START_N + ambo - 6]++;
+        }
+        return new GameState(board, 1 + random.nextInt(2));
+    }
+
+    /**
+     * Runs the check from the command line.
+     *
+     * @param args Optionally the number of games (default 100000) and
+     * the random seed (default 1)
+     */
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        String difference = verify(games, seed);
+        System.out.println(difference == null ? "All " + games + " games match" : "Differs at " + difference);
+        System.exit(difference == null ? 0 : 1);
+    }
+}
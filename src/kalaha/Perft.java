@@ -0,0 +1,343 @@
+package kalaha;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Move path enumeration (perft): counts the positions reached by every
+ * sequence of exactly depth moves, where each sowing is one move, so an
+ * extra turn adds a level. A game that ends earlier adds nothing. The
+ * counts only depend on the rules, so they check that a new move
+ * generator or board representation plays the same game, and the time
+ * they take measures move generation alone, without evaluation.
+ * <p>
+ * The counts are made in one of these modes:
+ * <p>
+ * makemove - with clone() and makeMove() on every move, and the legal
+ * moves from moveIsPossible(). This is the reference the other modes
+ * and the counts in perft.txt are checked against.
+ * <p>
+ * plain - in place with doMove/undoMove and the moves from
+ * MoveGenerator, as the searches play them.
+ * <p>
+ * parallel - as plain, with the subtrees of the first plies split
+ * across a ForkJoinPool.
+ * <p>
+ * hashed - as plain, with the count of each subtree cached by position
+ * key and depth, so that transpositions are only counted once. Since
+ * different positions with the same key would give wrong counts, this
+ * also checks the incremental keys of doMove/undoMove.
+ * <p>
+ * Usage: Perft mode depth [board] [divide], or Perft verify [file]
+ * to check every mode against the reference counts in a file (default
+ * ./perft.txt). With divide, the counts are also given per root ambo.
+ */
+public final class Perft
+{
+    /**
+     * The checked in reference counts.
+     */
+    public static final String REFERENCE_FILE = "./perft.txt";
+
+    //Subtrees with at most this many moves left are counted without splitting
+    private static final int SPLIT_DEPTH = 6;
+
+    //Subtrees with at most this many moves left are counted without the hash table
+    private static final int HASH_MIN_DEPTH = 3;
+
+    //Default hash table size: 2^20 entries, 16 bytes each
+    private static final int HASH_BITS = 20;
+
+    private final String mode;
+
+    //Pool of the parallel mode
+    private ForkJoinPool pool;
+
+    //Hash table of the hashed mode: keys and subtree counts
+    private long[] keys;
+    private long[] counts;
+    private int mask;
+
+    /**
+     * Creates a counter.
+     *
+     * @param mode "makemove", "plain", "parallel" or "hashed"
+     */
+    public Perft(String mode)
+    {
+        if (!mode.equals("makemove") && !mode.equals("plain") && !mode.equals("parallel") && !mode.equals("hashed"))
+        {
+            throw new IllegalArgumentException("Unknown perft mode: " + mode);
+        }
+        this.mode = mode;
+        if (mode.equals("parallel"))
+        {
+            pool = new ForkJoinPool();
+        }
+        if (mode.equals("hashed"))
+        {
+            keys = new long[1 << HASH_BITS];
+            counts = new long[1 << HASH_BITS];
+            mask = (1 << HASH_BITS) - 1;
+        }
+    }
+
+    /**
+     * Counts the move paths from a position.
+     *
+     * @param board The position. It is not changed.
+     * @param depth Number of moves in each path
+     * @return Number of positions at the end of the paths
+     */
+    public long count(GameState board, int depth)
+    {
+        if (mode.equals("makemove"))
+        {
+            return countMakeMove(board.clone(), depth);
+        }
+        if (mode.equals("parallel"))
+        {
+            return pool.invoke(new CountTask(board.clone(), depth));
+        }
+        if (mode.equals("hashed"))
+        {
+            return countHashed(board.clone(), depth);
+        }
+        return countPlain(board.clone(), depth);
+    }
+
+    /**
+     * Counts the move paths from a position after each root move.
+     *
+     * @param board The position. It is not changed.
+     * @param depth Number of moves in each path, including the root move
+     * @return The counts per root ambo (index 1-6), 0 for illegal moves
+     */
+    public long[] divide(GameState board, int depth)
+    {
+        long[] divided = new long[7];
+        for (int ambo = 1; ambo <= 6 && depth > 0 && !board.isTerminal(); ambo++)
+        {
+            if (board.moveIsPossible(ambo))
+            {
+                GameState child = board.clone();
+                child.makeMove(ambo);
+                divided[ambo] = count(child, depth - 1);
+            }
+        }
+        return divided;
+    }
+
+    private static long countMakeMove(GameState board, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        if (board.gameEnded())
+        {
+            return 0;
+        }
+        long total = 0;
+        for (int ambo = 1; ambo <= 6; ambo++)
+        {
+            if (board.moveIsPossible(ambo))
+            {
+                GameState child = board.clone();
+                child.makeMove(ambo);
+                total += countMakeMove(child, depth - 1);
+            }
+        }
+        return total;
+    }
+
+    private static long countPlain(GameState board, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        if (board.isTerminal())
+        {
+            return 0;
+        }
+        int moves = MoveGenerator.generate(board);
+        if (depth == 1)
+        {
+            return MoveGenerator.size(moves);
+        }
+        long total = 0;
+        for (; moves != 0; moves >>>= 3)
+        {
+            board.doMove(moves & 7);
+            total += countPlain(board, depth - 1);
+            board.undoMove();
+        }
+        return total;
+    }
+
+    private long countHashed(GameState board, int depth)
+    {
+        if (depth <= HASH_MIN_DEPTH)
+        {
+            return countPlain(board, depth);
+        }
+        if (board.isTerminal())
+        {
+            return 0;
+        }
+
+        //The depth is mixed into the key, since a position is reached with different numbers of moves left
+        long key = board.getHash() + depth * 0x9E3779B97F4A7C15L;
+        int index = (int)key & mask;
+        if (keys[index] == key)
+        {
+            return counts[index];
+        }
+
+        long total = 0;
+        for (int moves = MoveGenerator.generate(board); moves != 0; moves >>>= 3)
+        {
+            board.doMove(moves & 7);
+            total += countHashed(board, depth - 1);
+            board.undoMove();
+        }
+        keys[index] = key;
+        counts[index] = total;
+        return total;
+    }
+
+    /**
+     * Counts a subtree, forking a task for each move until at most
+     * SPLIT_DEPTH moves are left.
+     */
+    private static final class CountTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GameState board;
+        private final int depth;
+
+        CountTask(GameState board, int depth)
+        {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (depth <= SPLIT_DEPTH || board.isTerminal())
+            {
+                return countPlain(board, depth);
+            }
+            List<CountTask> tasks = new ArrayList<CountTask>();
+            for (int moves = MoveGenerator.generate(board); moves != 0; moves >>>= 3)
+            {
+                GameState child = board.clone();
+                child.makeMove(moves & 7);
+                tasks.add(new CountTask(child, depth - 1));
+            }
+            invokeAll(tasks);
+
+            long total = 0;
+            for (CountTask task : tasks)
+            {
+                total += task.join();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Checks every mode against the reference counts in a file. Each
+     * line holds a board string, a depth and the count; lines starting
+     * with # are comments.
+     *
+     * @param file The file with the reference counts
+     * @return True if all counts match
+     * @throws IOException If the file can not be read
+     */
+    public static boolean verify(String file) throws IOException
+    {
+        String[] modes = { "makemove", "plain", "parallel", "hashed" };
+        boolean ok = true;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                int depth = Integer.parseInt(fields[1]);
+                long expected = Long.parseLong(fields[2]);
+                StringBuilder result = new StringBuilder(line);
+                for (String mode : modes)
+                {
+                    long count = new Perft(mode).count(new GameState(fields[0]), depth);
+                    if (count != expected)
+                    {
+                        result.append("  ").append(mode).append(" gave ").append(count);
+                        ok = false;
+                    }
+                }
+                System.out.println(result.length() == line.length() ? result + "  ok" : result.toString());
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return ok;
+    }
+
+    /**
+     * Runs perft from the command line.
+     *
+     * @param args Mode, depth, and optionally a board string (default the
+     * start position) and "divide"; or "verify" and optionally a file
+     * @throws IOException If the reference file can not be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length > 0 && args[0].equals("verify"))
+        {
+            boolean ok = verify(args.length > 1 ? args[1] : REFERENCE_FILE);
+            System.out.println(ok ? "All counts match" : "Counts differ");
+            System.exit(ok ? 0 : 1);
+        }
+        if (args.length < 2)
+        {
+            System.out.println("Usage: Perft makemove|plain|parallel|hashed depth [board] [divide]");
+            System.out.println("       Perft verify [file]");
+            return;
+        }
+
+        Perft perft = new Perft(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        GameState board = args.length > 2 ? new GameState(args[2]) : new GameState();
+        if (args.length > 3 && args[3].equals("divide"))
+        {
+            long[] divided = perft.divide(board, depth);
+            for (int ambo = 1; ambo <= 6; ambo++)
+            {
+                System.out.println("Ambo " + ambo + ": " + divided[ambo]);
+            }
+        }
+
+        long start = System.nanoTime();
+        long count = perft.count(board, depth);
+        long ms = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println("Perft " + depth + " (" + args[0] + "): " + count + " in " + ms + " ms (" + count * 1000 / ms + " leaves/s)");
+    }
+}
@@ -0,0 +1,275 @@
+package kalaha;
+
+import java.util.Arrays;
+
+/**
+ * Macro-move generation: enumerates the complete turns of the player to
+ * move. A turn is a sequence of sowings that ends when the turn passes
+ * to the opponent or the game ends, so every move that lands in the
+ * own house is followed by all continuations of the chain. Each turn is
+ * returned with its resulting state. Turns that lead to the same state
+ * are only returned once.
+ * <p>
+ * The ambos of a turn are packed into a long, three bits per sowing in
+ * the order they are played (see getAmbo). A turn is cut after
+ * MAX_LENGTH sowings, and the state after a cut turn still has the
+ * same player to move, so searches must take the side to move from
+ * the state. Cut turns are rare but do occur: a turn can go on for as
+ * long as every sowing ends in the own house, and on the board
+ * 5;3;1;16;2;15;7;5;3;3;3;3;3;3;1 the longest turn has 23 sowings.
+ * <p>
+ * Turn lists with extra-turn chains are memoized in a direct-mapped
+ * cache indexed by the position hash, since searches reach the same
+ * positions again through transpositions and in every iteration of an
+ * iterative deepening search. Lists without a chain are not cached, as
+ * six sowings cost about as much as copying the list. A generator is
+ * not thread safe.
+ */
+public final class TurnGenerator
+{
+    /**
+     * Most sowings kept in one turn (3 bits each in a long). Longer
+     * turns are cut, leaving the same player to move.
+     */
+    public static final int MAX_LENGTH = 21;
+
+    //Default cache size: 2^12 positions
+    private static final int CACHE_BITS = 12;
+
+    private final TurnList[] cache;
+    private final PackedState scratch = new PackedState(0, 0);
+
+    //Cache statistics
+    private long lookups;
+    private long hits;
+
+    /**
+     * Creates a generator with the default cache size.
+     */
+    public TurnGenerator()
+    {
+        this(CACHE_BITS);
+    }
+
+    /**
+     * Creates a generator.
+     *
+     * @param cacheBits The cache holds the turns of 2^cacheBits positions
+     */
+    public TurnGenerator(int cacheBits)
+    {
+        cache = new TurnList[1 << cacheBits];
+    }
+
+    /**
+     * Generates the complete turns of the player to move.
+     *
+     * @param state The game state, not ended
+     * @param turns List the turns are written to
+     */
+    public void generate(PackedState state, TurnList turns)
+    {
+        long lo = state.getLow();
+        long hi = state.getHigh();
+        int slot = (int)state.getHash() & (cache.length - 1);
+
+        lookups++;
+        TurnList cached = cache[slot];
+        if (cached != null && cached.keyLo == lo && cached.keyHi == hi)
+        {
+            hits++;
+            turns.copy(cached);
+            return;
+        }
+
+        turns.clear(lo, hi);
+        expand(state.getNextPlayer(), lo, hi, 0, 0, turns);
+
+        //Without an extra turn the list is as cheap to generate as to copy
+        if (!turns.chained) return;
+        if (cached == null)
+        {
+            cached = new TurnList();
+            cache[slot] = cached;
+        }
+        cached.copy(turns);
+    }
+
+    /**
+     * Tries every sowing from a position inside a turn, and follows the
+     * ones that give another extra turn.
+     */
+    private void expand(int player, long lo, long hi, long moves, int length, TurnList turns)
+    {
+        for (int ambo = 1; ambo <= 6; ambo++)
+        {
+            scratch.set(lo, hi);
+            if (!scratch.makeMove(ambo)) continue;
+
+            long turn = moves | ((long)ambo << (3 * length));
+
+            //A chain that reaches MAX_LENGTH is added as it is, with the same player still to move
+            if (scratch.getNextPlayer() == player && !scratch.gameEnded() && length + 1 < MAX_LENGTH)
+            {
+                expand(player, scratch.getLow(), scratch.getHigh(), turn, length + 1, turns);
+            }
+            else
+            {
+                turns.add(turn, scratch.getLow(), scratch.getHigh());
+            }
+        }
+    }
+
+    /**
+     * Returns one sowing of a turn.
+     *
+     * @param moves Packed turn
+     * @param index Sowing number, 0 for the first
+     * @return Ambo (1-6), or 0 after the last sowing
+     */
+    public static int getAmbo(long moves, int index)
+    {
+        return (int)(moves >>> (3 * index)) & 7;
+    }
+
+    /**
+     * @param moves Packed turn
+     * @return Number of sowings in the turn
+     */
+    public static int getLength(long moves)
+    {
+        int n = 0;
+        for (; moves != 0; moves >>>= 3)
+        {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return Number of generate calls
+     */
+    public long getLookups()
+    {
+        return lookups;
+    }
+
+    /**
+     * @return Number of generate calls answered from the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * A list of complete turns with their resulting states. Searches keep
+     * one list per ply so that generating does not allocate once the
+     * lists have grown to size.
+     */
+    public static final class TurnList
+    {
+        //Position the turns were generated for
+        private long keyLo;
+        private long keyHi;
+
+        private int size;
+        private boolean chained;
+        private long[] moves = new long[16];
+        private long[] lo = new long[16];
+        private long[] hi = new long[16];
+
+        /**
+         * @return Number of turns
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * @param i Turn number
+         * @return The packed sowings of the turn
+         */
+        public long getMoves(int i)
+        {
+            return moves[i];
+        }
+
+        /**
+         * @param i Turn number
+         * @return Low long of the state after the turn
+         */
+        public long getLow(int i)
+        {
+            return lo[i];
+        }
+
+        /**
+         * @param i Turn number
+         * @return High long of the state after the turn
+         */
+        public long getHigh(int i)
+        {
+            return hi[i];
+        }
+
+        /**
+         * Swaps two turns, used to order the list.
+         *
+         * @param i Turn number
+         * @param j Turn number
+         */
+        public void swap(int i, int j)
+        {
+            long t = moves[i]; moves[i] = moves[j]; moves[j] = t;
+            t = lo[i]; lo[i] = lo[j]; lo[j] = t;
+            t = hi[i]; hi[i] = hi[j]; hi[j] = t;
+        }
+
+        private void clear(long keyLo, long keyHi)
+        {
+            this.keyLo = keyLo;
+            this.keyHi = keyHi;
+            size = 0;
+            chained = false;
+        }
+
+        //Adds a turn unless another turn already leads to the same state
+        private void add(long turn, long stateLo, long stateHi)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (lo[i] == stateLo && hi[i] == stateHi) return;
+            }
+            if (size == moves.length)
+            {
+                moves = Arrays.copyOf(moves, size * 2);
+                lo = Arrays.copyOf(lo, size * 2);
+                hi = Arrays.copyOf(hi, size * 2);
+            }
+            chained |= turn > 7;
+            moves[size] = turn;
+            lo[size] = stateLo;
+            hi[size] = stateHi;
+            size++;
+        }
+
+        private void copy(TurnList other)
+        {
+            if (moves.length < other.size)
+            {
+                moves = new long[other.moves.length];
+                lo = new long[other.moves.length];
+                hi = new long[other.moves.length];
+            }
+            keyLo = other.keyLo;
+            keyHi = other.keyHi;
+            size = other.size;
+            chained = other.chained;
+            System.arraycopy(other.moves, 0, moves, 0, size);
+            System.arraycopy(other.lo, 0, lo, 0, size);
+            System.arraycopy(other.hi, 0, hi, 0, size);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package kalaha;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys used to hash Kalaha game states. A position key is the
+ * XOR of one random key per (pit, seed count) pair plus a key for
+ * the player to move, which lets GameState update it incrementally
+ * while seeds are sown.
+ */
+public final class Zobrist
+{
+    /**
+     * Total number of seeds in a standard game (6 ambos x 6 seeds x 2 players).
+     */
+    public static final int MAX_SEEDS = 72;
+
+    //Random keys indexed by pit and seed count
+    private static final long[][] PIT = new long[14][MAX_SEEDS + 1];
+
+    //Key toggled in when player 2 is next to move
+    private static final long PLAYER_2;
+
+    static
+    {
+        //Fixed seed so that keys are the same between runs
+        Random rnd = new Random(0x4B616C6168614CL);
+        for (int i = 0; i < 14; i++)
+        {
+            for (int s = 0; s <= MAX_SEEDS; s++)
+            {
+                PIT[i][s] = rnd.nextLong();
+            }
+        }
+        PLAYER_2 = rnd.nextLong();
+    }
+
+    private Zobrist()
+    {
+
+    }
+
+    /**
+     * Returns the key for a pit holding the specified number of seeds.
+     *
+     * @param pit Board index (0-13)
+     * @param seeds Number of seeds in the pit
+     * @return Zobrist key
+     */
+    public static long pit(int pit, int seeds)
+    {
+        return PIT[pit][seeds];
+    }
+
+    /**
+     * Returns the key for the player to move.
+     *
+     * @param player Next player (1 or 2)
+     * @return Zobrist key, 0 for player 1
+     */
+    public static long player(int player)
+    {
+        return player == 2 ? PLAYER_2 : 0L;
+    }
+
+    /**
+     * Computes the full key for a board from scratch.
+     *
+     * @param board Board representation
+     * @param nextPlayer Next player to make a move
+     * @return Zobrist key
+     */
+    public static long hash(int[] board, int nextPlayer)
+    {
+        long h = player(nextPlayer);
+        for (int i = 0; i < 14; i++)
+        {
+            h ^= PIT[i][board[i]];
+        }
+        return h;
+    }
+}